@@ -6,6 +6,12 @@
  * 't' toggle the Player's path *extra credit*
  * 'b' perform a breadth-first search (Path shown in Blue)
  * 'd' perform a depth-first search (Path shown in Blue)
+ * 'j' find the cheapest path with Dijkstra's algorithm (Path shown in Blue)
+ * 'a' find the cheapest path with A* search (Path shown in Blue)
+ * 'f' fill in the dead ends, then find the cheapest path between the junctions left
+ *
+ * In terrain mode passages have traversal costs, and darker passages cost more to cross.
+ * In braid mode some walls are knocked down after the maze is built, so it has loops
  * 
  * Upon Arrival at the end of the maze, press 'b' or 'd' to display the shortest path
  * 
@@ -14,22 +20,36 @@
  */
 
 import java.awt.Color;
+import java.awt.image.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.*;
+import java.util.concurrent.*;
+import javax.imageio.*;
+import javax.imageio.metadata.*;
+import javax.imageio.stream.*;
 import tester.*;
 import javalib.impworld.*;
 import javalib.worldimages.*;
 
 // to represent an edge in the maze
 class Edge implements Comparable<Edge> {
+  // the most a passage can cost to cross in terrain mode
+  static final int MAX_COST = 9;
+
   Vertex from;
   Vertex to;
   int weight;
+  // what it costs the player to walk through this passage
+  int cost;
 
   // to initialize all the fields of the edge
   Edge(Vertex from, Vertex to, int weight) {
     this.from = from;
     this.to = to;
     this.weight = weight;
+    this.cost = 1;
   }
 
   // checks if this edge is equal to the given object
@@ -55,9 +75,15 @@ class Edge implements Comparable<Edge> {
     }
   }
 
-  // renders an image of this edge
+  // renders an image of this edge, darker the more it costs to cross
   WorldImage drawEdge() {
-    return new RectangleImage(9, 9, OutlineMode.SOLID, Color.gray);
+    if (this.cost <= 1) {
+      return new RectangleImage(9, 9, OutlineMode.SOLID, Color.gray);
+    }
+    // blends from gray toward dark brown
+    int shade = (this.cost - 1) * 100 / (MAX_COST - 1);
+    return new RectangleImage(9, 9, OutlineMode.SOLID,
+        new Color(128 - shade * 48 / 100, 128 - shade * 78 / 100, 128 - shade * 108 / 100));
   }
 }
 
@@ -90,6 +116,8 @@ class Vertex {
   Boolean isScanned;
   //Is this vertex in the solution path?
   Boolean isInSolution;
+  // Has the player walked over this vertex?
+  Boolean isOnPlayerPath;
 
   // to initialize all the fields of the vertex
   Vertex(int x, int y, ArrayList<Edge> outEdges) {
@@ -98,6 +126,7 @@ class Vertex {
     this.outEdges = outEdges;
     this.isScanned = false;
     this.isInSolution = false;
+    this.isOnPlayerPath = false;
   }
 
   // checks if this vertex is equal to the given object
@@ -143,20 +172,39 @@ class Vertex {
 
   // creates the hash code for this vertex
   public int hashCode() {
-    return this.x * this.y * 1000;
+    return this.x * 65599 + this.y;
   }
 }
 
 //to represents the MazeWorld Class
 class MazeWorld extends World {
-  Random rand = new Random();
+  // the largest number of cells shown on screen at once, in each direction
+  static final int MAX_VIEW_WIDTH = 100;
+  static final int MAX_VIEW_HEIGHT = 100;
+
+  Random rand;
+  // the seed the current maze was generated from
+  long seed;
+  // do passages have random traversal costs?
+  boolean terrain;
+  // the fraction of the walls left by kruskal that are knocked down to make loops
+  double braid;
   int height;
   int width;
 
+  // the number of cells visible in the window
+  int viewWidth;
+  int viewHeight;
+  // in logical coordinates, the top-left cell shown by the camera
+  int cameraX;
+  int cameraY;
+
   // counter for the game. used throughout the game to track iterations.
   int counter;
   // the player's score
   int score;
+  // the cost of the cheapest path through the maze, or -1 until the score is first shown
+  int cheapestCost;
   
   
   ArrayList<ArrayList<Vertex>> arrOfVertices;
@@ -164,7 +212,7 @@ class MazeWorld extends World {
   HashMap<Vertex, Vertex> representatives;
   List<Edge> edgesInTree;
 
-  // all edges in graph, sorted by edge weights
+  // all edges in graph, sorted by edge weights. After kruskal, the walls left standing
   List<Edge> worklist;
 
   // the player
@@ -182,40 +230,84 @@ class MazeWorld extends World {
   // Does the user want to display their path?
   boolean displayPlayerPath;
 
+  // every movement key pressed in the current maze, for replaying the game later
+  MoveLog log;
+
+  // the maze with its dead ends filled and corridors collapsed, built by the first
+  // junction search and reused until the maze changes
+  JunctionGraph junctions;
+
   MazeWorld() {
-    this.displayPlayerPath = true;
-    
     // smallest maze size is 3x3
-    this.width = (rand.nextInt(58) + 3);
-    this.height = (rand.nextInt(98) + 3);
+    this(new Random().nextInt(58) + 3, new Random().nextInt(98) + 3);
+  }
 
-    this.counter = -1;
-    this.arrOfVertices = this.initVertices();
-    this.edgesInTree = new ArrayList<Edge>();
-    this.worklist = this.sortByEdgeWeight(this.initEdges());
-    this.kruskal(this.worklist, this.arrOfVertices);
-    this.configureEdges();
-    this.player = new Player(0, 0);
-    this.explored = new ArrayList<Vertex>();
-    this.path = new ArrayList<Vertex>();
-    this.playerPath = new ArrayList<Vertex>(Arrays.asList(this.arrOfVertices.get(0).get(0)));
-    this.score = 0;
+  // creates a maze with the given width and height. Mazes larger than the window
+  // are drawn through a camera that follows the player
+  MazeWorld(int width, int height) {
+    this(width, height, new Random().nextLong());
+  }
+
+  // creates the maze with the given width and height generated from the given seed.
+  // The same seed always gives the same maze
+  MazeWorld(int width, int height, long seed) {
+    this(width, height, seed, false);
+  }
+
+  // creates the seeded maze with the given width and height, where every passage has a
+  // random traversal cost if terrain is true
+  MazeWorld(int width, int height, long seed, boolean terrain) {
+    this(width, height, seed, terrain, 0);
+  }
+
+  // creates the seeded maze with the given width and height, then knocks down the given
+  // fraction of its remaining walls. A braid of 0 gives a perfect maze, with exactly one
+  // path between any two cells
+  MazeWorld(int width, int height, long seed, boolean terrain, double braid) {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Maze must be at least 1x1");
+    }
+    if (!(braid >= 0 && braid <= 1)) {
+      throw new IllegalArgumentException("Braid must be between 0 and 1");
+    }
+    this.width = width;
+    this.height = height;
+    this.seed = seed;
+    this.terrain = terrain;
+    this.braid = braid;
+    this.viewWidth = Math.min(width, MAX_VIEW_WIDTH);
+    this.viewHeight = Math.min(height, MAX_VIEW_HEIGHT);
+    this.initMaze();
   }
 
   //Creates a new maze with the same width and height as the original
   void initMaze() {
+    this.rand = new Random(this.seed);
+    this.log = new MoveLog(this.seed, this.width, this.height, this.terrain, this.braid);
+    this.junctions = null;
     this.score = 0;
+    this.cheapestCost = -1;
     this.arrOfVertices = this.initVertices();
     this.edgesInTree = new ArrayList<Edge>();
     this.worklist = this.sortByEdgeWeight(this.initEdges());
     this.kruskal(this.worklist, this.arrOfVertices);
+    this.braidWalls();
     this.configureEdges();
+    this.assignCosts();
     this.player = new Player(0, 0);
     this.explored = new ArrayList<Vertex>();
     this.path = new ArrayList<Vertex>();
     this.counter = -1;
-    this.playerPath = new ArrayList<Vertex>(Arrays.asList(this.arrOfVertices.get(0).get(0)));
+    this.playerPath = new ArrayList<Vertex>();
+    this.addToPlayerPath(this.arrOfVertices.get(0).get(0));
     this.displayPlayerPath = true;
+    this.updateCamera();
+  }
+
+  // Effect: adds the given vertex to the player's path and marks it for drawing
+  void addToPlayerPath(Vertex v) {
+    this.playerPath.add(v);
+    v.isOnPlayerPath = true;
   }
 
   // makes a grid of vertices
@@ -243,7 +335,7 @@ class MazeWorld extends World {
         if (c < this.width - 1) {
           Vertex vLeft = arrOfVertices.get(c).get(r);
           Vertex vRight = arrOfVertices.get(c + 1).get(r);
-          Edge rEdge = new Edge(vLeft, vRight, new Random().nextInt());
+          Edge rEdge = new Edge(vLeft, vRight, this.rand.nextInt());
           result.add(rEdge);
         }
 
@@ -251,7 +343,7 @@ class MazeWorld extends World {
         if (r < this.height - 1) {
           Vertex vTop = arrOfVertices.get(c).get(r);
           Vertex vBottom = arrOfVertices.get(c).get(r + 1);
-          Edge bEdge = new Edge(vTop, vBottom, new Random().nextInt());
+          Edge bEdge = new Edge(vTop, vBottom, this.rand.nextInt());
           result.add(bEdge);
         }
       }
@@ -275,28 +367,55 @@ class MazeWorld extends World {
         result.put(v, v);
       }
     }
+    int next = 0;
+    int rejected = 0;
     while (this.edgesInTree.size() < result.size() - 1) {
-
-      Edge cur = worklist.remove(0);
-      if (!find(result, cur.to).equals(find(result, cur.from))) {
+      Edge cur = worklist.get(next);
+      next += 1;
+      Vertex toRep = find(result, cur.to);
+      Vertex fromRep = find(result, cur.from);
+      if (!toRep.equals(fromRep)) {
         this.edgesInTree.add(cur);
-        union(result, find(result, cur.to), (find(result, cur.from)));
+        union(result, toRep, fromRep);
+      }
+      else {
+        // keeps the rejected walls at the front of the worklist
+        worklist.set(rejected, cur);
+        rejected += 1;
       }
     }
-    worklist.removeAll(this.edgesInTree);
+    // drops the rest of the considered edges in one go, leaving every wall still standing
+    worklist.subList(rejected, next).clear();
     this.representatives = result;
     return this.edgesInTree;
   }
 
-  // finds the first vertex with the given key
+  // Effect: moves a random braid fraction of the standing walls in the worklist into the
+  // maze's passages. Each one joins two cells that were already connected, making a loop
+  void braidWalls() {
+    int count = (int) Math.round(this.braid * this.worklist.size());
+    // a partial Fisher-Yates shuffle picks the walls to knock down
+    for (int i = 0; i < count; i++) {
+      Collections.swap(this.worklist, i, i + this.rand.nextInt(this.worklist.size() - i));
+    }
+    List<Edge> knockedDown = this.worklist.subList(0, count);
+    this.edgesInTree.addAll(knockedDown);
+    knockedDown.clear();
+  }
+
+  // finds the representative of the given vertex, pointing every vertex on the way
+  // straight at it so that later finds are quick
   Vertex find(HashMap<Vertex, Vertex> r, Vertex v) {
-    if (r.get(v).equals(v)) {
-      return r.get(v);
+    Vertex root = v;
+    while (!r.get(root).equals(root)) {
+      root = r.get(root);
     }
-    else {
-      return find(r, r.get(v));
+    while (!v.equals(root)) {
+      Vertex next = r.get(v);
+      r.put(v, root);
+      v = next;
     }
-
+    return root;
   }
 
   // changes the vertex to the given vertex
@@ -304,6 +423,15 @@ class MazeWorld extends World {
     rep.put(v1, v2);
   }
 
+  // Effect: gives every passage a random cost from 1 to Edge.MAX_COST in terrain mode
+  void assignCosts() {
+    if (this.terrain) {
+      for (Edge e : this.edgesInTree) {
+        e.cost = this.rand.nextInt(Edge.MAX_COST) + 1;
+      }
+    }
+  }
+
   // configure edges in the edgesInTree list to the vertices in the maze
   void configureEdges() {
     for (Edge e : this.edgesInTree) {
@@ -312,56 +440,121 @@ class MazeWorld extends World {
     }
   }
 
-  // draws the Maze on the World Canvas
+  // Effect: centers the camera on the player, without scrolling past the maze's borders
+  void updateCamera() {
+    this.cameraX = Math.max(0, Math.min(this.player.x - this.viewWidth / 2,
+        this.width - this.viewWidth));
+    this.cameraY = Math.max(0, Math.min(this.player.y - this.viewHeight / 2,
+        this.height - this.viewHeight));
+  }
+
+  // is the cell at the given logical position inside the camera's view?
+  boolean inView(int x, int y) {
+    return x >= this.cameraX && x < this.cameraX + this.viewWidth
+        && y >= this.cameraY && y < this.cameraY + this.viewHeight;
+  }
+
+  // the passages touching a cell inside the camera's view, each listed once: by its 'from'
+  // vertex, or by its 'to' vertex when 'from' is off screen
+  ArrayList<Edge> visibleEdges() {
+    ArrayList<Edge> edges = new ArrayList<Edge>();
+    for (int x = this.cameraX; x < this.cameraX + this.viewWidth; x++) {
+      for (int y = this.cameraY; y < this.cameraY + this.viewHeight; y++) {
+        Vertex v = this.arrOfVertices.get(x).get(y);
+        for (Edge e : v.outEdges) {
+          if (e.from == v || !this.inView(e.from.x, e.from.y)) {
+            edges.add(e);
+          }
+        }
+      }
+    }
+    return edges;
+  }
+
+  // converts a logical x coordinate to the center of its cell on the screen
+  int screenX(int x) {
+    return (x - this.cameraX) * 10 + 5;
+  }
+
+  // converts a logical y coordinate to the center of its cell on the screen
+  int screenY(int y) {
+    return (y - this.cameraY) * 10 + 5;
+  }
+
+  // draws the part of the Maze inside the camera's view on the World Canvas.
+  // Only visible cells are visited, so drawing cost depends on the window size
+  // rather than the maze size
   public WorldScene makeScene() {
     WorldScene world = new WorldScene(this.width + 10, this.height + 10);
+    this.updateCamera();
+    int maxX = this.cameraX + this.viewWidth;
+    int maxY = this.cameraY + this.viewHeight;
+
     // draws the maze
-    for (ArrayList<Vertex> av : this.arrOfVertices) {
-      for (Vertex v : av) {
-        world.placeImageXY(v.drawVertex(), v.x * 10 + 5, v.y * 10 + 5);
+    for (int x = this.cameraX; x < maxX; x++) {
+      for (int y = this.cameraY; y < maxY; y++) {
+        Vertex v = this.arrOfVertices.get(x).get(y);
+        world.placeImageXY(v.drawVertex(), this.screenX(x), this.screenY(y));
       }
     }
     // draws the edges
-    for (Edge e : this.edgesInTree) {
-      world.placeImageXY(e.drawEdge(), (e.to.x + e.from.x) * 5 + 5,
-          (e.to.y + e.from.y) * 5 + 5);
+    for (Edge e : this.visibleEdges()) {
+      world.placeImageXY(e.drawEdge(), (e.to.x + e.from.x - 2 * this.cameraX) * 5 + 5,
+          (e.to.y + e.from.y - 2 * this.cameraY) * 5 + 5);
     }
     // draws the end point
-    world.placeImageXY(new RectangleImage(9, 9, OutlineMode.SOLID, Color.red),
-        this.width * 10 - 5, this.height * 10 - 5);
+    if (this.inView(this.width - 1, this.height - 1)) {
+      world.placeImageXY(new RectangleImage(9, 9, OutlineMode.SOLID, Color.red),
+          this.screenX(this.width - 1), this.screenY(this.height - 1));
+    }
 
     // draws the explored vertices
-    for (Vertex v : this.explored) {
-      world.placeImageXY(v.drawExploredVertex(), v.x * 10 + 5, v.y * 10 + 5);
+    for (int x = this.cameraX; x < maxX; x++) {
+      for (int y = this.cameraY; y < maxY; y++) {
+        Vertex v = this.arrOfVertices.get(x).get(y);
+        if (v.isScanned) {
+          world.placeImageXY(v.drawExploredVertex(), this.screenX(x), this.screenY(y));
+        }
+      }
     }
 
     // draws the player's path
     if (this.displayPlayerPath) {
-      for (Vertex v : this.playerPath) {
-        world.placeImageXY(v.drawPlayerPath(), v.x * 10 + 5, v.y * 10 + 5);
+      for (int x = this.cameraX; x < maxX; x++) {
+        for (int y = this.cameraY; y < maxY; y++) {
+          Vertex v = this.arrOfVertices.get(x).get(y);
+          if (v.isOnPlayerPath) {
+            world.placeImageXY(v.drawPlayerPath(), this.screenX(x), this.screenY(y));
+          }
+        }
       }
-      
     }
     // draws the shortest path
     if (this.counter >= this.explored.size()) {
-      for (Vertex v : this.path) {
-        world.placeImageXY(v.drawShortestPath(), v.x * 10 + 5, v.y * 10 + 5);
+      for (int x = this.cameraX; x < maxX; x++) {
+        for (int y = this.cameraY; y < maxY; y++) {
+          Vertex v = this.arrOfVertices.get(x).get(y);
+          if (v.isInSolution) {
+            world.placeImageXY(v.drawShortestPath(), this.screenX(x), this.screenY(y));
+          }
+        }
       }
     }
-    
+
     // draws the player
-    world.placeImageXY(this.player.drawPlayer(), player.x * 10 + 5, player.y * 10 + 5);
-    
+    world.placeImageXY(this.player.drawPlayer(), this.screenX(this.player.x),
+        this.screenY(this.player.y));
+
     // displays the player's score if they reach the end of the maze
     if (this.player.x == this.arrOfVertices.get(this.width - 1).get(this.height - 1).x
         && this.player.y == this.arrOfVertices.get(this.width - 1)
         .get(this.height - 1).y) {
       world.placeImageXY(new OverlayImage(
-          new TextImage("You Win! Score: " + Integer.toString(this.score - this.path.size()),
+          new TextImage("You Win! Score: " + Integer.toString(this.displayedScore()),
               Color.GREEN),
-          new RectangleImage(this.width * 10, this.height * 2, OutlineMode.SOLID,
+          new RectangleImage(this.viewWidth * 10, this.viewHeight * 2, OutlineMode.SOLID,
               Color.WHITE)),
-          this.width * 10 / 2, this.height * 10 / 2);
+          this.viewWidth * 10 / 2, this.viewHeight * 10 / 2);
     }
     return world;
   }
@@ -372,34 +565,82 @@ class MazeWorld extends World {
         new Vertex(fromX, fromY, new ArrayList<Edge>()), 0));
   }
 
+  // returns the passage between the two given cells, or null if they aren't connected
+  Edge edgeBetween(int toX, int toY, int fromX, int fromY) {
+    for (Edge e : this.arrOfVertices.get(fromX).get(fromY).outEdges) {
+      if ((e.to.x == toX && e.to.y == toY) || (e.from.x == toX && e.from.y == toY)) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  // the cost of the solution path: one for its first cell, plus the cost of every passage
+  // along it. Without terrain this is the number of cells in the path
+  int pathCost() {
+    if (this.path.isEmpty()) {
+      return 0;
+    }
+    int cost = 1;
+    for (int i = 1; i < this.path.size(); i++) {
+      Vertex from = this.path.get(i - 1);
+      Vertex to = this.path.get(i);
+      cost += this.edgeBetween(to.x, to.y, from.x, from.y).cost;
+    }
+    return cost;
+  }
+
+  // the score shown at the end of the maze: what the player's moves cost beyond the
+  // cheapest path, whichever search was shown. Once there are loops, 'b' and 'd' can
+  // show paths that cost more, so the cheapest cost is found once and kept
+  int displayedScore() {
+    if (this.cheapestCost < 0) {
+      // one for the first cell of the path, as in pathCost
+      this.cheapestCost = new TerrainSolver(new FlatMaze(this)).solve(false) + 1;
+    }
+    return this.score - this.cheapestCost;
+  }
+
   // Allow for user interaction with the game (ie. movement, toggle player path, search)
   public void onKeyEvent(String keyPress) {
+    int move = MoveLog.codeFor(keyPress);
+    if (move != -1) {
+      this.log.append(move);
+    }
     if (keyPress.equals("up")) {
-      if (this.canTravelTo(this.player.x, this.player.y - 1, this.player.x, this.player.y)) {
+      Edge passage = this.edgeBetween(this.player.x, this.player.y - 1,
+          this.player.x, this.player.y);
+      if (passage != null) {
+        this.score = this.score + passage.cost;
         this.player.y = this.player.y - 1;
-        this.playerPath.add(this.arrOfVertices.get(this.player.x).get(this.player.y));
-        this.score = this.score + 1;
+        this.addToPlayerPath(this.arrOfVertices.get(this.player.x).get(this.player.y));
       }
     }
     if (keyPress.equals("down")) {
-      if (this.canTravelTo(this.player.x, this.player.y + 1, this.player.x, this.player.y)) {
+      Edge passage = this.edgeBetween(this.player.x, this.player.y + 1,
+          this.player.x, this.player.y);
+      if (passage != null) {
+        this.score = this.score + passage.cost;
         this.player.y = this.player.y + 1;
-        this.playerPath.add(this.arrOfVertices.get(this.player.x).get(this.player.y));
-        this.score = this.score + 1;
+        this.addToPlayerPath(this.arrOfVertices.get(this.player.x).get(this.player.y));
       }
     }
     if (keyPress.equals("left")) {
-      if (this.canTravelTo(this.player.x - 1, this.player.y, this.player.x, this.player.y)) {
+      Edge passage = this.edgeBetween(this.player.x - 1, this.player.y,
+          this.player.x, this.player.y);
+      if (passage != null) {
+        this.score = this.score + passage.cost;
         this.player.x = this.player.x - 1;
-        this.playerPath.add(this.arrOfVertices.get(this.player.x).get(this.player.y));
-        this.score = this.score + 1;
+        this.addToPlayerPath(this.arrOfVertices.get(this.player.x).get(this.player.y));
       }
     }
     if (keyPress.equals("right")) {
-      if (this.canTravelTo(this.player.x + 1, this.player.y, this.player.x, this.player.y)) {
+      Edge passage = this.edgeBetween(this.player.x + 1, this.player.y,
+          this.player.x, this.player.y);
+      if (passage != null) {
+        this.score = this.score + passage.cost;
         this.player.x = this.player.x + 1;
-        this.playerPath.add(this.arrOfVertices.get(this.player.x).get(this.player.y));
-        this.score = this.score + 1;
+        this.addToPlayerPath(this.arrOfVertices.get(this.player.x).get(this.player.y));
       }
     }
 
@@ -411,7 +652,20 @@ class MazeWorld extends World {
       this.counter = 0;
       this.performSearch(keyPress);
     }
+    if (keyPress.equals("j")) {
+      this.counter = 0;
+      this.performWeightedSearch(false);
+    }
+    if (keyPress.equals("a")) {
+      this.counter = 0;
+      this.performWeightedSearch(true);
+    }
+    if (keyPress.equals("f")) {
+      this.counter = 0;
+      this.performJunctionSearch();
+    }
     if (keyPress.equals("r")) {
+      this.seed = this.rand.nextLong();
       this.initMaze();
     }
 
@@ -421,46 +675,96 @@ class MazeWorld extends World {
     }
   }
 
-  // solves the maze through breadth first search or depth first search
+  // solves the maze through breadth first search or depth first search. Cells are marked
+  // as seen when they are added to the worklist, so that in a maze with loops no cell is
+  // added twice and breadth first search still finds a shortest path
   void performSearch(String keypress) {
     HashMap<Vertex, Vertex> cameFromEdge = new HashMap<Vertex, Vertex>();
-    ArrayList<Vertex> worklist = new ArrayList<Vertex>();
+    HashSet<Vertex> seen = new HashSet<Vertex>();
+    ArrayDeque<Vertex> worklist = new ArrayDeque<Vertex>();
     worklist.add(this.arrOfVertices.get(0).get(0));
-    this.explored.clear();
+    seen.add(this.arrOfVertices.get(0).get(0));
+    this.clearSearch();
+    Vertex finalNode = this.arrOfVertices.get(this.arrOfVertices.size() 
+        - 1).get(this.arrOfVertices.get(0).size() - 1);
 
     while (worklist.size() > 0) {
-      Vertex next = worklist.remove(0);
-      Vertex finalNode = this.arrOfVertices.get(this.arrOfVertices.size() 
-          - 1).get(this.arrOfVertices.get(0).size() - 1);
+      Vertex next = worklist.removeFirst();
       if (next.equals(finalNode)) {
         this.reversePath(cameFromEdge, next);
         return;
       }
+      this.explored.add(next);
       for (Edge e : next.outEdges) {
-        if (!this.explored.contains(e.to) && next.equals(e.from)) {
-          if (keypress.equals("b")) {
-            worklist.add(e.to);
-          }
-          if (keypress.equals("d")) {
-            worklist.add(0, e.to);
-          }
-          this.explored.add(next);
-          cameFromEdge.put(e.to, next);
+        Vertex other = e.to;
+        if (next.equals(e.to)) {
+          other = e.from;
         }
-        else if (!this.explored.contains(e.from) && next.equals(e.to)) {
+        if (!seen.contains(other)) {
+          seen.add(other);
           if (keypress.equals("b")) {
-            worklist.add(e.from);
+            worklist.addLast(other);
           }
           if (keypress.equals("d")) {
-            worklist.add(0, e.from);
+            worklist.addFirst(other);
           }
-          this.explored.add(next);
-          cameFromEdge.put(e.from, next);
+          cameFromEdge.put(other, next);
         }
       }
     }
   }
 
+  // Effect: clears the previous search so that its cells are no longer drawn
+  void clearSearch() {
+    for (Vertex v : this.explored) {
+      v.isScanned = false;
+    }
+    for (Vertex v : this.path) {
+      v.isInSolution = false;
+    }
+    this.explored.clear();
+    this.path.clear();
+  }
+
+  // finds the cheapest path through the maze with Dijkstra's algorithm, or A* search if
+  // useHeuristic is true, on a flattened copy of the maze. Fills explored and path like
+  // performSearch, so the search is animated the same way
+  void performWeightedSearch(boolean useHeuristic) {
+    this.clearSearch();
+    TerrainSolver solver = new TerrainSolver(new FlatMaze(this));
+    if (solver.solve(useHeuristic) < 0) {
+      return;
+    }
+    for (int i = 0; i < solver.settled; i++) {
+      int c = solver.order[i];
+      this.explored.add(this.arrOfVertices.get(c / this.height).get(c % this.height));
+    }
+    for (int c = solver.maze.cells() - 1; c != -1; c = solver.cameFrom[c]) {
+      this.path.add(this.arrOfVertices.get(c / this.height).get(c % this.height));
+    }
+  }
+
+  // finds the cheapest path through the maze on its junction graph, building the graph
+  // the first time. Explored holds the junctions in the order they were settled, and the
+  // path is expanded back into every cell along the way
+  void performJunctionSearch() {
+    this.clearSearch();
+    if (this.junctions == null) {
+      this.junctions = new JunctionGraph(new FlatMaze(this));
+    }
+    if (this.junctions.solve() < 0) {
+      return;
+    }
+    for (int i = 0; i < this.junctions.settled; i++) {
+      int c = this.junctions.nodeCell[this.junctions.order[i]];
+      this.explored.add(this.arrOfVertices.get(c / this.height).get(c % this.height));
+    }
+    int[] cells = this.junctions.cellPath();
+    for (int i = cells.length - 1; i >= 0; i--) {
+      this.path.add(this.arrOfVertices.get(cells[i] / this.height).get(cells[i] % this.height));
+    }
+  }
+
   // Effect: reverses the Path so that it may viewed from end to beginning
   void reversePath(HashMap<Vertex, Vertex> cameFromEdge, Vertex next) {
     this.path.add(this.arrOfVertices.get(this.arrOfVertices.size() 
@@ -493,140 +797,2278 @@ class MazeWorld extends World {
 }
 
 
-//to represent Examples of Mazes
-class ExamplesMazeWorld {
-  MazeWorld world;
-
-  ArrayList<ArrayList<Vertex>> grid;
-  ArrayList<ArrayList<Vertex>> grid1;
-  ArrayList<ArrayList<Vertex>> grid3;
+// to represent an append-only record of the movement keys pressed in one maze. Each move
+// takes two bits, so four moves are packed into every byte
+class MoveLog {
+  static final int UP = 0;
+  static final int DOWN = 1;
+  static final int LEFT = 2;
+  static final int RIGHT = 3;
 
-  ArrayList<Vertex> reconstructedpath;
+  // the layout written by toBytes, stored as its first byte. Version 3 added braid after
+  // terrain, which version 2 added after the height
+  static final byte VERSION = 3;
 
-  ArrayList<Vertex> list1;
-  ArrayList<Vertex> list2;
-  ArrayList<Vertex> list3;
-  ArrayList<Vertex> list4;
+  // the size of the header written by toBytes: version, seed, width, height, terrain,
+  // braid and move count
+  static final int HEADER_SIZE = 30;
 
-  ArrayList<Vertex> gridlist1;
-  ArrayList<Vertex> gridlist2;
-  ArrayList<Vertex> gridlist3;
+  // the most cells a log read from bytes may describe, so that a bad header can't make the
+  // Replayer build a maze too large for memory
+  static final long MAX_CELLS = 1L << 22;
 
-  ArrayList<Edge> edges;
-  ArrayList<Edge> edges2;
-  ArrayList<Edge> sortededges;
-  ArrayList<Edge> edgesintree;
+  // the maze the moves were made in
+  long seed;
+  int width;
+  int height;
+  boolean terrain;
+  double braid;
 
-  Vertex a;
-  Vertex b;
-  Vertex c;
-  Vertex d;
-  Vertex e;
-  Vertex f;
+  byte[] moves;
+  // the number of moves recorded
+  int count;
 
-  Vertex g;
-  Vertex h;
-  Vertex i;
-  Vertex j;
-  Vertex k;
-  Vertex l;
+  // creates an empty log for the maze of the given size generated from the given seed
+  MoveLog(long seed, int width, int height, boolean terrain, double braid) {
+    this.seed = seed;
+    this.width = width;
+    this.height = height;
+    this.terrain = terrain;
+    this.braid = braid;
+    this.moves = new byte[16];
+    this.count = 0;
+  }
 
-  Vertex a1;
-  Vertex a2;
-  Vertex a3;
-  Vertex a4;
-  Vertex a5;
-  Vertex a6;
-  Vertex a7;
-  Vertex a8;
-  Vertex a9;
+  // reads a log written by toBytes
+  MoveLog(byte[] data) {
+    if (data.length < HEADER_SIZE || data[0] != VERSION) {
+      throw new IllegalArgumentException("Move log is not in version " + VERSION + " format");
+    }
+    ByteBuffer buf = ByteBuffer.wrap(data, 1, data.length - 1);
+    this.seed = buf.getLong();
+    this.width = buf.getInt();
+    this.height = buf.getInt();
+    this.terrain = buf.get() != 0;
+    this.braid = buf.getDouble();
+    this.count = buf.getInt();
+    if (this.width < 1 || this.height < 1 || (long) this.width * this.height > MAX_CELLS) {
+      throw new IllegalArgumentException("Move log maze must have between 1 and " + MAX_CELLS
+          + " cells");
+    }
+    if (!(this.braid >= 0 && this.braid <= 1)) {
+      throw new IllegalArgumentException("Move log braid must be between 0 and 1");
+    }
+    if (this.count < 0 || data.length - HEADER_SIZE < (this.count + 3) / 4) {
+      throw new IllegalArgumentException("Move log is truncated");
+    }
+    this.moves = Arrays.copyOfRange(data, HEADER_SIZE, HEADER_SIZE + (this.count + 3) / 4);
+  }
 
-  Edge eToC;
-  Edge cToD;
-  Edge aToB;
-  Edge bToE;
-  Edge bToC;
-  Edge fToD;
-  Edge aToE;
-  Edge bToF;
+  // returns the move code for the given key, or -1 if it doesn't move the player
+  static int codeFor(String key) {
+    if (key.equals("up")) {
+      return UP;
+    }
+    if (key.equals("down")) {
+      return DOWN;
+    }
+    if (key.equals("left")) {
+      return LEFT;
+    }
+    if (key.equals("right")) {
+      return RIGHT;
+    }
+    return -1;
+  }
 
-  Edge gToH;
-  Edge gToJ;
-  Edge hToI;
-  Edge hToK;
-  Edge jToI;
-  Edge jToK;
-  Edge kToI;
-  Edge iToL;
+  // Effect: adds the given move code to the end of this log
+  void append(int move) {
+    if (this.count / 4 == this.moves.length) {
+      this.moves = Arrays.copyOf(this.moves, this.moves.length * 2);
+    }
+    this.moves[this.count / 4] |= (byte) (move << ((this.count % 4) * 2));
+    this.count += 1;
+  }
 
-  HashMap<Vertex, Vertex> representatives;
-  HashMap<Vertex, Vertex> linkedrepresentatives;
-  HashMap<Vertex, Vertex> cameFromEdge;
+  // returns the move code at the given position
+  int get(int i) {
+    return (this.moves[i / 4] >> ((i % 4) * 2)) & 3;
+  }
 
-  Player player;
+  // writes this log as a header followed by the packed moves
+  byte[] toBytes() {
+    int packed = (this.count + 3) / 4;
+    ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + packed);
+    buf.put(VERSION);
+    buf.putLong(this.seed);
+    buf.putInt(this.width);
+    buf.putInt(this.height);
+    buf.put((byte) (this.terrain ? 1 : 0));
+    buf.putDouble(this.braid);
+    buf.putInt(this.count);
+    buf.put(this.moves, 0, packed);
+    return buf.array();
+  }
+}
 
-  // initializes the data
-  void initData() {
-    this.world = new MazeWorld();
-    
-    
-    // vertices of map
-    this.a = new Vertex(0, 0, new ArrayList<Edge>());
-    this.b = new Vertex(0, 1, new ArrayList<Edge>());
-    this.c = new Vertex(0, 2, new ArrayList<Edge>());
-    this.d = new Vertex(1, 0, new ArrayList<Edge>());
-    this.e = new Vertex(1, 1, new ArrayList<Edge>());
-    this.f = new Vertex(1, 2, new ArrayList<Edge>());
+// to re-simulate recorded games without a window. The maze is flattened into arrays of
+// passage costs, so each replayed move is a couple of array lookups
+class Replayer {
+  FlatMaze maze;
+  // the cost of the maze's cheapest solution
+  int solutionCost;
 
-    // example of edges in a map
-    this.eToC = new Edge(this.e, this.c, 15);
-    this.cToD = new Edge(this.c, this.d, 25);
-    this.aToB = new Edge(this.a, this.b, 30);
-    this.bToE = new Edge(this.b, this.e, 35);
-    this.bToC = new Edge(this.b, this.c, 40);
-    this.fToD = new Edge(this.f, this.d, 50);
-    this.aToE = new Edge(this.a, this.e, 50);
-    this.bToF = new Edge(this.b, this.f, 50);
+  // the state of the player after the last replay
+  int x;
+  int y;
+  int score;
 
-    // examples of vertices
-    this.g = new Vertex(0, 0, new ArrayList<Edge>());
-    this.h = new Vertex(0, 1, new ArrayList<Edge>());
-    this.i = new Vertex(0, 2, new ArrayList<Edge>());
-    this.j = new Vertex(1, 0, new ArrayList<Edge>());
-    this.k = new Vertex(1, 1, new ArrayList<Edge>());
-    this.i = new Vertex(1, 2, new ArrayList<Edge>());
+  // builds the maze a log was recorded in
+  Replayer(MoveLog log) {
+    this(new MazeWorld(log.width, log.height, log.seed, log.terrain, log.braid));
+  }
 
-    // examples of vertices
-    this.g = new Vertex(0, 0, new ArrayList<Edge>());
-    this.h = new Vertex(0, 1, new ArrayList<Edge>());
-    this.i = new Vertex(0, 2, new ArrayList<Edge>());
-    this.j = new Vertex(1, 0, new ArrayList<Edge>());
-    this.k = new Vertex(1, 1, new ArrayList<Edge>());
-    this.i = new Vertex(1, 2, new ArrayList<Edge>());
+  // flattens the given maze
+  Replayer(MazeWorld world) {
+    this.maze = new FlatMaze(world);
+    // one for the first cell of the path, as in MazeWorld's pathCost
+    this.solutionCost = new TerrainSolver(this.maze).solve(false) + 1;
+  }
 
-    // examples of vertices
-    this.a1 = new Vertex(0, 0, new ArrayList<Edge>());
-    this.a2 = new Vertex(0, 1, new ArrayList<Edge>());
-    this.a3 = new Vertex(0, 2, new ArrayList<Edge>());
-    this.a4 = new Vertex(1, 0, new ArrayList<Edge>());
-    this.a5 = new Vertex(1, 1, new ArrayList<Edge>());
-    this.a6 = new Vertex(1, 2, new ArrayList<Edge>());
-    this.a7 = new Vertex(1, 0, new ArrayList<Edge>());
-    this.a8 = new Vertex(1, 1, new ArrayList<Edge>());
-    this.a9 = new Vertex(1, 2, new ArrayList<Edge>());
+  // Effect: replays every move in the given log from the start of the maze, keeping
+  // the player's final position and score. Blocked moves are ignored, as in the game
+  void replay(MoveLog log) {
+    int height = this.maze.height;
+    int c = 0;
+    int total = 0;
+    for (int i = 0; i < log.count; i++) {
+      // move codes are the same as FlatMaze's directions
+      int move = log.get(i);
+      int n = this.maze.neighbor(c, move);
+      if (n != -1) {
+        total += this.maze.cost(c, move);
+        c = n;
+      }
+    }
+    this.x = c / height;
+    this.y = c % height;
+    this.score = total;
+  }
 
-    // examples of edges
-    this.gToH = new Edge(this.g, this.h, 1);
-    this.gToJ = new Edge(this.g, this.j, 1);
-    this.hToI = new Edge(this.h, this.i, 1);
-    this.hToK = new Edge(this.h, this.k, 1);
-    this.iToL = new Edge(this.i, this.l, 1);
-    this.jToK = new Edge(this.j, this.k, 1);
-    this.kToI = new Edge(this.k, this.i, 1);
+  // did the last replay end on the bottom-right cell?
+  boolean reachedEnd() {
+    return this.x == this.maze.width - 1 && this.y == this.maze.height - 1;
+  }
 
-    this.list3 = new ArrayList<Vertex>(Arrays.asList(this.g, this.h, this.i));
-    this.list4 = new ArrayList<Vertex>(Arrays.asList(this.j, this.k, this.l));
-    this.grid1 = new ArrayList<ArrayList<Vertex>>(Arrays.asList(this.list3, this.list4));
+  // the score makeScene shows at the end of the maze, as in MazeWorld's displayedScore
+  int displayedScore() {
+    return this.score - this.solutionCost;
+  }
+}
+
+// to represent a maze on a grid that the solvers and analysis can run on, whatever holds
+// its passages. The cell at (x, y) is numbered x * height + y
+abstract class GridMaze {
+  int width;
+  int height;
+
+  // the number of cells in the maze
+  int cells() {
+    return this.width * this.height;
+  }
+
+  // returns the neighbor of the given cell in the given direction (up, down, left, right,
+  // numbered as MoveLog's moves), or -1 if there is a wall that way
+  abstract int neighbor(int c, int dir);
+
+  // returns the cost of the passage from the given cell in the given direction, which must
+  // not lead out of the maze, or 0 for a wall
+  abstract int cost(int c, int dir);
+}
+
+// to represent a maze flattened into arrays with one entry per cell, where each passage
+// holds what it costs to cross, or 0 for a wall
+class FlatMaze extends GridMaze {
+  // the passage from each cell to its right neighbor
+  byte[] rightCost;
+  // the passage from each cell to its bottom neighbor
+  byte[] downCost;
+
+  // creates a maze of the given size with every wall up
+  FlatMaze(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.rightCost = new byte[width * height];
+    this.downCost = new byte[width * height];
+  }
+
+  // flattens the passages of the given maze
+  FlatMaze(MazeWorld world) {
+    this(world.width, world.height);
+    for (Edge e : world.edgesInTree) {
+      if (e.from.x == e.to.x) {
+        this.downCost[e.from.x * this.height + Math.min(e.from.y, e.to.y)] = (byte) e.cost;
+      }
+      else {
+        this.rightCost[Math.min(e.from.x, e.to.x) * this.height + e.from.y] = (byte) e.cost;
+      }
+    }
+  }
+
+  // returns the neighbor of the given cell in the given direction, or -1 for a wall
+  int neighbor(int c, int dir) {
+    if (dir == MoveLog.UP) {
+      return c % this.height > 0 && this.downCost[c - 1] != 0 ? c - 1 : -1;
+    }
+    if (dir == MoveLog.DOWN) {
+      return this.downCost[c] != 0 ? c + 1 : -1;
+    }
+    if (dir == MoveLog.LEFT) {
+      return c >= this.height && this.rightCost[c - this.height] != 0 ? c - this.height : -1;
+    }
+    return this.rightCost[c] != 0 ? c + this.height : -1;
+  }
+
+  // returns the cost of the passage from the given cell in the given direction
+  int cost(int c, int dir) {
+    if (dir == MoveLog.UP) {
+      return this.downCost[c - 1];
+    }
+    if (dir == MoveLog.DOWN) {
+      return this.downCost[c];
+    }
+    if (dir == MoveLog.LEFT) {
+      return this.rightCost[c - this.height];
+    }
+    return this.rightCost[c];
+  }
+}
+
+// to represent a min-priority queue of the ints 0 to capacity - 1 with int priorities. It
+// remembers where each int sits in the heap, so a queued int's priority can be lowered in
+// place instead of queueing it twice
+class IndexedMinHeap {
+  // the queued ints, as a binary heap ordered by priority
+  int[] heap;
+  // the position of each int in the heap, or -1 if it isn't queued
+  int[] pos;
+  // the priority of each queued int
+  int[] keys;
+  int size;
+
+  // creates an empty heap for the ints 0 to capacity - 1
+  IndexedMinHeap(int capacity) {
+    this.heap = new int[capacity];
+    this.pos = new int[capacity];
+    this.keys = new int[capacity];
+    Arrays.fill(this.pos, -1);
+    this.size = 0;
+  }
+
+  // is nothing queued?
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // is the given int queued?
+  boolean contains(int item) {
+    return this.pos[item] != -1;
+  }
+
+  // Effect: queues the given int with the given priority
+  void insert(int item, int key) {
+    this.keys[item] = key;
+    this.heap[this.size] = item;
+    this.pos[item] = this.size;
+    this.size += 1;
+    this.siftUp(this.size - 1);
+  }
+
+  // Effect: lowers the priority of the given queued int
+  void decreaseKey(int item, int key) {
+    this.keys[item] = key;
+    this.siftUp(this.pos[item]);
+  }
+
+  // Effect: removes and returns the queued int with the lowest priority
+  int pollMin() {
+    int min = this.heap[0];
+    this.size -= 1;
+    this.pos[min] = -1;
+    if (this.size > 0) {
+      this.heap[0] = this.heap[this.size];
+      this.pos[this.heap[0]] = 0;
+      this.siftDown(0);
+    }
+    return min;
+  }
+
+  // Effect: removes everything from the heap
+  void clear() {
+    for (int i = 0; i < this.size; i++) {
+      this.pos[this.heap[i]] = -1;
+    }
+    this.size = 0;
+  }
+
+  // Effect: moves the int at the given heap position up until its parent is no larger
+  void siftUp(int i) {
+    int item = this.heap[i];
+    int key = this.keys[item];
+    while (i > 0) {
+      int parent = (i - 1) >> 1;
+      if (this.keys[this.heap[parent]] <= key) {
+        break;
+      }
+      this.heap[i] = this.heap[parent];
+      this.pos[this.heap[i]] = i;
+      i = parent;
+    }
+    this.heap[i] = item;
+    this.pos[item] = i;
+  }
+
+  // Effect: moves the int at the given heap position down until its children are no smaller
+  void siftDown(int i) {
+    int item = this.heap[i];
+    int key = this.keys[item];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= this.size) {
+        break;
+      }
+      if (child + 1 < this.size && this.keys[this.heap[child + 1]] < this.keys[this.heap[child]]) {
+        child += 1;
+      }
+      if (this.keys[this.heap[child]] >= key) {
+        break;
+      }
+      this.heap[i] = this.heap[child];
+      this.pos[this.heap[i]] = i;
+      i = child;
+    }
+    this.heap[i] = item;
+    this.pos[item] = i;
+  }
+}
+
+// to find the cheapest path from the top-left to the bottom-right cell of a flattened maze,
+// with Dijkstra's algorithm or A* search. The scratch arrays are kept between solves
+class TerrainSolver {
+  GridMaze maze;
+  // the cheapest known cost of reaching each cell
+  int[] dist;
+  // the cell each cell was reached from, or -1 for the start and unreached cells
+  int[] cameFrom;
+  // the cells in the order they were settled by the last solve
+  int[] order;
+  int settled;
+  IndexedMinHeap heap;
+
+  // creates a solver for the given maze
+  TerrainSolver(GridMaze maze) {
+    this.maze = maze;
+    this.dist = new int[maze.cells()];
+    this.cameFrom = new int[maze.cells()];
+    this.order = new int[maze.cells()];
+    this.heap = new IndexedMinHeap(maze.cells());
+  }
+
+  // returns the cost of the cheapest path from the top-left to the bottom-right cell, or -1
+  // if there is none. With useHeuristic, cells are ordered by their cost so far plus their
+  // Manhattan distance to the end, which never overestimates since every passage costs
+  // at least 1
+  int solve(boolean useHeuristic) {
+    int end = this.maze.cells() - 1;
+    Arrays.fill(this.dist, Integer.MAX_VALUE);
+    Arrays.fill(this.cameFrom, -1);
+    this.heap.clear();
+    this.settled = 0;
+
+    this.dist[0] = 0;
+    this.heap.insert(0, this.estimate(0, useHeuristic));
+    while (!this.heap.isEmpty()) {
+      int c = this.heap.pollMin();
+      this.order[this.settled] = c;
+      this.settled += 1;
+      if (c == end) {
+        return this.dist[c];
+      }
+      for (int dir = 0; dir < 4; dir++) {
+        int n = this.maze.neighbor(c, dir);
+        if (n != -1) {
+          this.relax(c, n, this.maze.cost(c, dir), useHeuristic);
+        }
+      }
+    }
+    return -1;
+  }
+
+  // Effect: updates the cost of reaching the cell to through a passage of the given cost
+  // from the cell from, if that is cheaper
+  void relax(int from, int to, int cost, boolean useHeuristic) {
+    int d = this.dist[from] + cost;
+    if (d < this.dist[to]) {
+      boolean queued = this.heap.contains(to);
+      this.dist[to] = d;
+      this.cameFrom[to] = from;
+      if (queued) {
+        this.heap.decreaseKey(to, d + this.estimate(to, useHeuristic));
+      }
+      else {
+        this.heap.insert(to, d + this.estimate(to, useHeuristic));
+      }
+    }
+  }
+
+  // the Manhattan distance from the given cell to the end, or 0 without the heuristic
+  int estimate(int c, boolean useHeuristic) {
+    if (!useHeuristic) {
+      return 0;
+    }
+    return (this.maze.width - 1 - c / this.maze.height)
+        + (this.maze.height - 1 - c % this.maze.height);
+  }
+}
+
+// to represent a flattened maze reduced to the junctions that matter for getting from its
+// top-left to its bottom-right cell. Dead ends are filled in first, then every corridor of
+// cells with exactly two open sides is collapsed into one passage whose cost is the sum of
+// the corridor's passages. Both steps take linear time, and the graph can be solved again
+// and again without rebuilding it
+class JunctionGraph {
+  GridMaze maze;
+  int start;
+  int end;
+
+  // the cells filled in as dead ends
+  boolean[] filled;
+  int filledCount;
+
+  // the junction of each cell, or -1 for cells inside a corridor or filled in
+  int[] nodeOf;
+  // the cell of each junction
+  int[] nodeCell;
+  int nodes;
+
+  // the collapsed corridors, each joining two junctions
+  int[] edgeFrom;
+  int[] edgeTo;
+  int[] edgeCost;
+  // the cells inside each corridor are edgeCells[edgeCellStart[e]] up to
+  // edgeCells[edgeCellStart[e + 1]], in order from edgeFrom[e] to edgeTo[e]
+  int[] edgeCellStart;
+  int[] edgeCells;
+  int edges;
+
+  // the corridors of junction n are adjEdge[adjStart[n]] up to adjEdge[adjStart[n + 1]]
+  int[] adjStart;
+  int[] adjEdge;
+
+  // scratch for solving, kept between solves
+  int[] dist;
+  // the corridor each junction was reached through, or -1
+  int[] cameFromEdge;
+  // the junctions in the order they were settled by the last solve
+  int[] order;
+  int settled;
+  IndexedMinHeap heap;
+
+  // reduces the given maze
+  JunctionGraph(GridMaze maze) {
+    this.maze = maze;
+    this.start = 0;
+    this.end = maze.cells() - 1;
+    this.fillDeadEnds();
+    this.collapseCorridors();
+    this.dist = new int[this.nodes];
+    this.cameFromEdge = new int[this.nodes];
+    this.order = new int[this.nodes];
+    this.heap = new IndexedMinHeap(this.nodes);
+  }
+
+  // counts the open sides of the given cell that don't lead into a filled cell
+  int degree(int c) {
+    int degree = 0;
+    for (int dir = 0; dir < 4; dir++) {
+      int n = this.maze.neighbor(c, dir);
+      if (n != -1 && !this.filled[n]) {
+        degree += 1;
+      }
+    }
+    return degree;
+  }
+
+  // Effect: fills in every dead end other than the start and end, then every cell that
+  // became a dead end because of it, until no dead ends are left
+  void fillDeadEnds() {
+    int cells = this.maze.cells();
+    this.filled = new boolean[cells];
+    int[] degrees = new int[cells];
+    int[] queue = new int[cells];
+    int tail = 0;
+    for (int c = 0; c < cells; c++) {
+      degrees[c] = this.degree(c);
+    }
+    for (int c = 0; c < cells; c++) {
+      if (degrees[c] <= 1 && c != this.start && c != this.end) {
+        this.filled[c] = true;
+        queue[tail++] = c;
+      }
+    }
+    for (int head = 0; head < tail; head++) {
+      int c = queue[head];
+      for (int dir = 0; dir < 4; dir++) {
+        int n = this.maze.neighbor(c, dir);
+        if (n != -1 && !this.filled[n]) {
+          degrees[n] -= 1;
+          if (degrees[n] <= 1 && n != this.start && n != this.end) {
+            this.filled[n] = true;
+            queue[tail++] = n;
+          }
+        }
+      }
+    }
+    this.filledCount = tail;
+  }
+
+  // Effect: makes a junction of the start, the end and every unfilled cell that doesn't
+  // have exactly two open sides, then walks each corridor between junctions once
+  void collapseCorridors() {
+    int cells = this.maze.cells();
+    this.nodeOf = new int[cells];
+    Arrays.fill(this.nodeOf, -1);
+    this.nodeCell = new int[cells];
+    this.nodes = 0;
+    for (int c = 0; c < cells; c++) {
+      if (!this.filled[c] && (c == this.start || c == this.end || this.degree(c) != 2)) {
+        this.nodeOf[c] = this.nodes;
+        this.nodeCell[this.nodes] = c;
+        this.nodes += 1;
+      }
+    }
+    this.nodeCell = Arrays.copyOf(this.nodeCell, this.nodes);
+
+    // every junction has at most four corridors, each shared by two junctions
+    int maxEdges = 2 * this.nodes;
+    this.edgeFrom = new int[maxEdges];
+    this.edgeTo = new int[maxEdges];
+    this.edgeCost = new int[maxEdges];
+    this.edgeCellStart = new int[maxEdges + 1];
+    this.edgeCells = new int[cells];
+    this.edges = 0;
+    int cellCount = 0;
+    boolean[] walked = new boolean[cells];
+    for (int u = 0; u < this.nodes; u++) {
+      for (int dir = 0; dir < 4; dir++) {
+        int prev = this.nodeCell[u];
+        int cur = this.maze.neighbor(prev, dir);
+        // skips walls, filled cells and corridors already walked from their other end
+        if (cur == -1 || this.filled[cur] || walked[cur]) {
+          continue;
+        }
+        int cost = this.maze.cost(prev, dir);
+        int first = cellCount;
+        while (this.nodeOf[cur] == -1) {
+          walked[cur] = true;
+          this.edgeCells[cellCount++] = cur;
+          int next = -1;
+          for (int d = 0; d < 4 && next == -1; d++) {
+            int n = this.maze.neighbor(cur, d);
+            if (n != -1 && n != prev && !this.filled[n]) {
+              next = n;
+              cost += this.maze.cost(cur, d);
+            }
+          }
+          prev = cur;
+          cur = next;
+        }
+        int v = this.nodeOf[cur];
+        // a corridor with no cells inside is seen from both junctions, so it is kept from
+        // the lower one. Loops back to the same junction are never part of a cheapest path
+        if (first == cellCount ? u < v : u != v) {
+          this.edgeFrom[this.edges] = u;
+          this.edgeTo[this.edges] = v;
+          this.edgeCost[this.edges] = cost;
+          this.edgeCellStart[this.edges] = first;
+          this.edges += 1;
+        }
+        else {
+          cellCount = first;
+        }
+      }
+    }
+    this.edgeCellStart[this.edges] = cellCount;
+
+    this.adjStart = new int[this.nodes + 1];
+    for (int e = 0; e < this.edges; e++) {
+      this.adjStart[this.edgeFrom[e] + 1] += 1;
+      this.adjStart[this.edgeTo[e] + 1] += 1;
+    }
+    for (int n = 0; n < this.nodes; n++) {
+      this.adjStart[n + 1] += this.adjStart[n];
+    }
+    this.adjEdge = new int[2 * this.edges];
+    int[] fill = Arrays.copyOf(this.adjStart, this.nodes);
+    for (int e = 0; e < this.edges; e++) {
+      this.adjEdge[fill[this.edgeFrom[e]]++] = e;
+      this.adjEdge[fill[this.edgeTo[e]]++] = e;
+    }
+  }
+
+  // returns the cost of the cheapest path from the start to the end junction with
+  // Dijkstra's algorithm, or -1 if there is none
+  int solve() {
+    int target = this.nodeOf[this.end];
+    Arrays.fill(this.dist, Integer.MAX_VALUE);
+    Arrays.fill(this.cameFromEdge, -1);
+    this.heap.clear();
+    this.settled = 0;
+
+    int source = this.nodeOf[this.start];
+    this.dist[source] = 0;
+    this.heap.insert(source, 0);
+    while (!this.heap.isEmpty()) {
+      int u = this.heap.pollMin();
+      this.order[this.settled] = u;
+      this.settled += 1;
+      if (u == target) {
+        return this.dist[u];
+      }
+      for (int i = this.adjStart[u]; i < this.adjStart[u + 1]; i++) {
+        int e = this.adjEdge[i];
+        int v = this.edgeFrom[e] == u ? this.edgeTo[e] : this.edgeFrom[e];
+        int d = this.dist[u] + this.edgeCost[e];
+        if (d < this.dist[v]) {
+          boolean queued = this.heap.contains(v);
+          this.dist[v] = d;
+          this.cameFromEdge[v] = e;
+          if (queued) {
+            this.heap.decreaseKey(v, d);
+          }
+          else {
+            this.heap.insert(v, d);
+          }
+        }
+      }
+    }
+    return -1;
+  }
+
+  // expands the path found by the last solve into every cell along it, from the start
+  // to the end
+  int[] cellPath() {
+    int[] cells = new int[this.maze.cells()];
+    int length = 0;
+    int v = this.nodeOf[this.end];
+    // collects the path backwards, then flips it
+    while (true) {
+      cells[length++] = this.nodeCell[v];
+      int e = this.cameFromEdge[v];
+      if (e == -1) {
+        break;
+      }
+      int first = this.edgeCellStart[e];
+      int last = this.edgeCellStart[e + 1];
+      if (this.edgeTo[e] == v) {
+        for (int i = last - 1; i >= first; i--) {
+          cells[length++] = this.edgeCells[i];
+        }
+        v = this.edgeFrom[e];
+      }
+      else {
+        for (int i = first; i < last; i++) {
+          cells[length++] = this.edgeCells[i];
+        }
+        v = this.edgeTo[e];
+      }
+    }
+    int[] path = new int[length];
+    for (int i = 0; i < length; i++) {
+      path[i] = cells[length - 1 - i];
+    }
+    return path;
+  }
+}
+
+// to represent the statistics used to grade how hard a maze is. They are all computed in a
+// few linear passes over a flattened maze
+class MazeStats {
+  // the header row matching toCsv
+  static final String CSV_HEADER = "seed,width,height,passages,dead_ends,corridors,"
+      + "three_way,four_way,diameter,solution_length,river_factor";
+
+  long seed;
+  int width;
+  int height;
+  int passages;
+  // the number of cells with each number of open sides, from 0 to 4. Cells with one open
+  // side are dead ends, and cells with three or four are junctions
+  int[] degreeCounts;
+  // the number of cells on the longest shortest path between two cells. Two breadth first
+  // searches find it exactly in a perfect maze; in a maze with loops it is a lower bound
+  int diameter;
+  // the number of cells on the shortest path from the top-left to the bottom-right cell
+  int solutionLength;
+  // the average number of cells in each branch leaving the solution path. Higher values
+  // mean fewer but longer wrong turns
+  double riverFactor;
+
+  // computes the statistics of the given maze, generated from the given seed
+  MazeStats(long seed, GridMaze maze) {
+    this.seed = seed;
+    this.width = maze.width;
+    this.height = maze.height;
+    int cells = maze.cells();
+    this.degreeCounts = new int[5];
+    this.passages = 0;
+    for (int c = 0; c < cells; c++) {
+      if (maze.neighbor(c, MoveLog.RIGHT) != -1) {
+        this.passages += 1;
+      }
+      if (maze.neighbor(c, MoveLog.DOWN) != -1) {
+        this.passages += 1;
+      }
+      int degree = 0;
+      for (int dir = 0; dir < 4; dir++) {
+        if (maze.neighbor(c, dir) != -1) {
+          degree += 1;
+        }
+      }
+      this.degreeCounts[degree] += 1;
+    }
+
+    int[] dist = new int[cells];
+    int[] parent = new int[cells];
+    int[] queue = new int[cells];
+    int reached = this.search(maze, 0, dist, parent, queue);
+    int farthest = queue[reached - 1];
+    this.solutionLength = dist[cells - 1];
+
+    // marks the solution path, then counts the branches leaving it
+    boolean[] onPath = new boolean[cells];
+    if (this.solutionLength > 0) {
+      for (int c = cells - 1; c != -1; c = parent[c]) {
+        onPath[c] = true;
+      }
+    }
+    int branches = 0;
+    for (int c = 0; c < cells; c++) {
+      if (onPath[c]) {
+        for (int dir = 0; dir < 4; dir++) {
+          int n = maze.neighbor(c, dir);
+          if (n != -1 && !onPath[n]) {
+            branches += 1;
+          }
+        }
+      }
+    }
+    if (branches > 0) {
+      this.riverFactor = (double) (reached - this.solutionLength) / branches;
+    }
+
+    reached = this.search(maze, farthest, dist, parent, queue);
+    this.diameter = dist[queue[reached - 1]];
+  }
+
+  // Effect: runs a breadth first search from the given cell, leaving in dist the number of
+  // cells on the way to each cell (0 if unreachable), in parent where each cell was reached
+  // from, and in queue the cells in the order they were reached. Returns how many were
+  int search(GridMaze maze, int source, int[] dist, int[] parent, int[] queue) {
+    Arrays.fill(dist, 0);
+    int tail = 0;
+    queue[tail++] = source;
+    dist[source] = 1;
+    parent[source] = -1;
+    for (int head = 0; head < tail; head++) {
+      int c = queue[head];
+      for (int dir = 0; dir < 4; dir++) {
+        int n = maze.neighbor(c, dir);
+        if (n != -1 && dist[n] == 0) {
+          dist[n] = dist[c] + 1;
+          parent[n] = c;
+          queue[tail++] = n;
+        }
+      }
+    }
+    return tail;
+  }
+
+  // the number of dead ends
+  int deadEnds() {
+    return this.degreeCounts[1];
+  }
+
+  // the number of cells where the maze branches
+  int junctions() {
+    return this.degreeCounts[3] + this.degreeCounts[4];
+  }
+
+  // formats these statistics as a row of CSV_HEADER
+  String toCsv() {
+    return this.seed + "," + this.width + "," + this.height + "," + this.passages + ","
+        + this.degreeCounts[1] + "," + this.degreeCounts[2] + "," + this.degreeCounts[3] + ","
+        + this.degreeCounts[4] + "," + this.diameter + "," + this.solutionLength + ","
+        + String.format("%.3f", this.riverFactor);
+  }
+}
+
+// to compute the statistics of batches of seeded mazes on several threads, writing them
+// as CSV rows in seed order. Run with java MazeAnalyzer width height count [first seed]
+// [threads] [braid] [terrain]
+class MazeAnalyzer {
+  // how many mazes each thread is given at a time
+  static final int CHUNK_SIZE = 64;
+
+  int width;
+  int height;
+  boolean terrain;
+  double braid;
+  int threads;
+
+  // creates an analyzer for mazes of the given kind, spread over the given number of threads
+  MazeAnalyzer(int width, int height, boolean terrain, double braid, int threads) {
+    this.width = width;
+    this.height = height;
+    this.terrain = terrain;
+    this.braid = braid;
+    this.threads = threads;
+  }
+
+  // generates and analyzes the maze with the given seed
+  MazeStats analyze(long seed) {
+    return new MazeStats(seed,
+        new FlatMaze(new MazeWorld(this.width, this.height, seed, this.terrain, this.braid)));
+  }
+
+  // analyzes the given number of mazes, with consecutive seeds, as one CSV row each
+  ArrayList<String> analyzeRange(long firstSeed, int count) {
+    ArrayList<String> rows = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      rows.add(this.analyze(firstSeed + i).toCsv());
+    }
+    return rows;
+  }
+
+  // Effect: writes the header and one row for each of count mazes, starting from the given
+  // seed, to out. Chunks of mazes are analyzed in parallel, but at most two per thread are
+  // held at once, so memory stays flat however many mazes are screened
+  void analyzeBatch(long firstSeed, int count, Appendable out)
+      throws IOException, InterruptedException, ExecutionException {
+    ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+    try {
+      out.append(MazeStats.CSV_HEADER).append('\n');
+      ArrayDeque<Future<ArrayList<String>>> pending = new ArrayDeque<Future<ArrayList<String>>>();
+      int submitted = 0;
+      while (submitted < count || !pending.isEmpty()) {
+        while (submitted < count && pending.size() < 2 * this.threads) {
+          final long from = firstSeed + submitted;
+          final int size = Math.min(CHUNK_SIZE, count - submitted);
+          pending.add(pool.submit(new Callable<ArrayList<String>>() {
+            public ArrayList<String> call() {
+              return MazeAnalyzer.this.analyzeRange(from, size);
+            }
+          }));
+          submitted += size;
+        }
+        for (String row : pending.removeFirst().get()) {
+          out.append(row).append('\n');
+        }
+      }
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.println(
+          "usage: java MazeAnalyzer width height count [first seed] [threads] [braid] [terrain]");
+      return;
+    }
+    int width = Integer.parseInt(args[0]);
+    int height = Integer.parseInt(args[1]);
+    int count = Integer.parseInt(args[2]);
+    long firstSeed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+    int threads = args.length > 4 ? Integer.parseInt(args[4])
+        : Runtime.getRuntime().availableProcessors();
+    double braid = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+    boolean terrain = args.length > 6 && Boolean.parseBoolean(args[6]);
+
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+    long start = System.nanoTime();
+    new MazeAnalyzer(width, height, terrain, braid, threads).analyzeBatch(firstSeed, count, out);
+    out.flush();
+    System.err.println(String.format("%d mazes in %.2fs", count,
+        (System.nanoTime() - start) / 1e9));
+  }
+}
+
+// to receive the frames of an exported animation. The first frame is the whole image and
+// every later one is only the rectangle that changed, as palette indices of FrameExporter
+interface FrameSink {
+  // Effect: starts the animation with the given full first frame
+  void begin(byte[] pixels, int width, int height) throws IOException;
+
+  // Effect: adds a frame that differs from the previous one only inside the given rectangle
+  void frame(int x, int y, int width, int height, byte[] patch) throws IOException;
+
+  // Effect: finishes the animation
+  void end() throws IOException;
+}
+
+// to draw a search's exploration of a maze straight into an image raster, without a window,
+// in the colors of the game. Each frame only redraws the cells that changed, and frames are
+// handed to a FrameSink on a background thread through a small queue, so animations of any
+// length are exported without holding their frames in memory.
+// Run with java FrameExporter width height seed search out [scale] [cells per frame], where
+// search is one of the game's search keys (b, d, j, a or f), and out is a .gif file or a
+// directory for a PNG sequence
+class FrameExporter {
+  // the palette of the exported images
+  static final byte WALL = 0;
+  static final byte CELL = 1;
+  static final byte END = 2;
+  static final byte EXPLORED = 3;
+  static final byte PATH = 4;
+  static final IndexColorModel PALETTE = new IndexColorModel(8, 5,
+      new byte[] {(byte) 255, (byte) 128, (byte) 255, 0, 0},
+      new byte[] {(byte) 255, (byte) 128, 0, (byte) 255, 0},
+      new byte[] {(byte) 255, (byte) 128, 0, (byte) 255, (byte) 255});
+
+  // how many frames may wait for the encoder before drawing pauses
+  static final int QUEUE_SIZE = 64;
+
+  GridMaze maze;
+  // the number of pixels on each side of a cell, including the wall to its right and below
+  int scale;
+  int imageWidth;
+  int imageHeight;
+  // the palette index of every pixel of the current frame
+  byte[] pixels;
+
+  // creates an exporter drawing the given maze with the given number of pixels per cell
+  FrameExporter(GridMaze maze, int scale) {
+    if (scale < 2) {
+      throw new IllegalArgumentException("Scale must be at least 2 pixels per cell");
+    }
+    this.maze = maze;
+    this.scale = scale;
+    this.imageWidth = maze.width * scale;
+    this.imageHeight = maze.height * scale;
+    this.pixels = new byte[this.imageWidth * this.imageHeight];
+  }
+
+  // Effect: fills the given rectangle of the current frame with the given color
+  void fill(int x, int y, int width, int height, byte color) {
+    for (int row = y; row < y + height; row++) {
+      Arrays.fill(this.pixels, row * this.imageWidth + x, row * this.imageWidth + x + width,
+          color);
+    }
+  }
+
+  // Effect: colors the square of the given cell
+  void drawCell(int c, byte color) {
+    this.fill(c / this.maze.height * this.scale, c % this.maze.height * this.scale,
+        this.scale - 1, this.scale - 1, color);
+  }
+
+  // Effect: draws the maze with nothing explored, as the first frame
+  void drawMaze() {
+    Arrays.fill(this.pixels, WALL);
+    for (int c = 0; c < this.maze.cells(); c++) {
+      int x = c / this.maze.height * this.scale;
+      int y = c % this.maze.height * this.scale;
+      this.fill(x, y, this.scale - 1, this.scale - 1, CELL);
+      if (this.maze.neighbor(c, MoveLog.RIGHT) != -1) {
+        this.fill(x + this.scale - 1, y, 1, this.scale - 1, CELL);
+      }
+      if (this.maze.neighbor(c, MoveLog.DOWN) != -1) {
+        this.fill(x, y + this.scale - 1, this.scale - 1, 1, CELL);
+      }
+    }
+    this.drawCell(this.maze.cells() - 1, END);
+  }
+
+  // copies the given rectangle of the current frame
+  byte[] copy(int x, int y, int width, int height) {
+    byte[] patch = new byte[width * height];
+    for (int row = 0; row < height; row++) {
+      System.arraycopy(this.pixels, (y + row) * this.imageWidth + x, patch, row * width, width);
+    }
+    return patch;
+  }
+
+  // Effect: animates the given cells being explored, then the given path being drawn, like
+  // onTick does, coloring cellsPerFrame cells each frame. Frames are encoded by the given
+  // sink on another thread while the next ones are drawn
+  void export(int[] explored, int exploredCount, int[] path, int pathLength, int cellsPerFrame,
+      FrameSink sink) throws IOException, InterruptedException {
+    BlockingQueue<Object[]> queue = new ArrayBlockingQueue<Object[]>(QUEUE_SIZE);
+    FrameEncoder encoder = new FrameEncoder(queue, sink);
+    Thread thread = new Thread(encoder, "frame-encoder");
+    this.drawMaze();
+    boolean finished = false;
+    try {
+      sink.begin(this.pixels.clone(), this.imageWidth, this.imageHeight);
+      thread.start();
+      try {
+        this.queueFrames(explored, exploredCount, EXPLORED, cellsPerFrame, queue, encoder);
+        this.queueFrames(path, pathLength, PATH, cellsPerFrame, queue, encoder);
+      }
+      finally {
+        queue.put(FrameEncoder.DONE);
+        thread.join();
+      }
+      if (encoder.error != null) {
+        throw encoder.error;
+      }
+      finished = true;
+    }
+    finally {
+      // the sink's files are closed even when the export failed, but then the error that
+      // stopped it is the one reported
+      try {
+        sink.end();
+      }
+      catch (IOException | RuntimeException e) {
+        if (finished) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  // Effect: colors the given cells, cellsPerFrame at a time, queueing the changed
+  // rectangle of each frame. Stops early if the encoder has failed
+  void queueFrames(int[] cells, int count, byte color, int cellsPerFrame,
+      BlockingQueue<Object[]> queue, FrameEncoder encoder) throws InterruptedException {
+    for (int first = 0; first < count && encoder.error == null; first += cellsPerFrame) {
+      int minX = Integer.MAX_VALUE;
+      int minY = Integer.MAX_VALUE;
+      int maxX = 0;
+      int maxY = 0;
+      for (int i = first; i < Math.min(first + cellsPerFrame, count); i++) {
+        this.drawCell(cells[i], color);
+        minX = Math.min(minX, cells[i] / this.maze.height);
+        maxX = Math.max(maxX, cells[i] / this.maze.height);
+        minY = Math.min(minY, cells[i] % this.maze.height);
+        maxY = Math.max(maxY, cells[i] % this.maze.height);
+      }
+      int x = minX * this.scale;
+      int y = minY * this.scale;
+      int width = (maxX - minX + 1) * this.scale - 1;
+      int height = (maxY - minY + 1) * this.scale - 1;
+      queue.put(new Object[] {new int[] {x, y, width, height}, this.copy(x, y, width, height)});
+    }
+  }
+
+  // Effect: animates the last search of the given game, which must be the maze this
+  // exporter draws
+  void export(MazeWorld world, int cellsPerFrame, FrameSink sink)
+      throws IOException, InterruptedException {
+    int[] explored = new int[world.explored.size()];
+    for (int i = 0; i < explored.length; i++) {
+      Vertex v = world.explored.get(i);
+      explored[i] = v.x * world.height + v.y;
+    }
+    int[] path = new int[world.path.size()];
+    for (int i = 0; i < path.length; i++) {
+      Vertex v = world.path.get(i);
+      path[i] = v.x * world.height + v.y;
+    }
+    this.export(explored, explored.length, path, path.length, cellsPerFrame, sink);
+  }
+
+  // is the given key one of the game's search keys? Other keys would move the player or
+  // change the maze instead of running a search
+  static boolean isSearchKey(String key) {
+    return key.equals("b") || key.equals("d") || key.equals("j") || key.equals("a")
+        || key.equals("f");
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 5) {
+      System.err.println("usage: java FrameExporter width height seed search out "
+          + "[scale] [cells per frame]");
+      return;
+    }
+    if (!isSearchKey(args[3])) {
+      throw new IllegalArgumentException("Unknown search " + args[3]
+          + ", expected one of b, d, j, a or f");
+    }
+    MazeWorld world = new MazeWorld(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+        Long.parseLong(args[2]));
+    world.onKeyEvent(args[3]);
+    int scale = args.length > 5 ? Integer.parseInt(args[5]) : 10;
+    int cellsPerFrame = args.length > 6 ? Integer.parseInt(args[6]) : 1;
+    FrameSink sink;
+    if (args[4].endsWith(".gif")) {
+      sink = new GifSink(new File(args[4]), 2);
+    }
+    else {
+      sink = new PngSequenceSink(new File(args[4]));
+    }
+    long start = System.nanoTime();
+    new FrameExporter(new FlatMaze(world), scale).export(world, cellsPerFrame, sink);
+    System.err.println(String.format("exported in %.2fs", (System.nanoTime() - start) / 1e9));
+  }
+}
+
+// to pass queued frames to a FrameSink on its own thread, until it is handed DONE
+class FrameEncoder implements Runnable {
+  // marks the end of the queue
+  static final Object[] DONE = new Object[0];
+
+  BlockingQueue<Object[]> queue;
+  FrameSink sink;
+  // the first error the sink threw, if any
+  volatile IOException error;
+
+  FrameEncoder(BlockingQueue<Object[]> queue, FrameSink sink) {
+    this.queue = queue;
+    this.sink = sink;
+  }
+
+  // Effect: encodes frames until DONE. After an error, frames are taken but dropped, so the
+  // thread drawing them never blocks on a full queue
+  public void run() {
+    try {
+      Object[] frame = this.queue.take();
+      while (frame != DONE) {
+        if (this.error == null) {
+          int[] rect = (int[]) frame[0];
+          try {
+            this.sink.frame(rect[0], rect[1], rect[2], rect[3], (byte[]) frame[1]);
+          }
+          catch (IOException e) {
+            this.error = e;
+          }
+          catch (RuntimeException e) {
+            this.error = new IOException(e);
+          }
+        }
+        frame = this.queue.take();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
+
+// to write each frame as a numbered PNG file in a directory. PNG has no partial frames, so
+// the sink keeps its own copy of the image and patches it before writing
+class PngSequenceSink implements FrameSink {
+  File directory;
+  BufferedImage image;
+  byte[] pixels;
+  int width;
+  int count;
+
+  PngSequenceSink(File directory) {
+    this.directory = directory;
+  }
+
+  // Effect: writes the first frame
+  public void begin(byte[] pixels, int width, int height) throws IOException {
+    if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+      throw new IOException("Cannot create " + this.directory);
+    }
+    this.image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED,
+        FrameExporter.PALETTE);
+    this.pixels = ((DataBufferByte) this.image.getRaster().getDataBuffer()).getData();
+    System.arraycopy(pixels, 0, this.pixels, 0, pixels.length);
+    this.width = width;
+    this.count = 0;
+    this.write();
+  }
+
+  // Effect: patches the image and writes it
+  public void frame(int x, int y, int width, int height, byte[] patch) throws IOException {
+    for (int row = 0; row < height; row++) {
+      System.arraycopy(patch, row * width, this.pixels, (y + row) * this.width + x, width);
+    }
+    this.write();
+  }
+
+  // Effect: writes the current image as the next numbered file
+  void write() throws IOException {
+    File file = new File(this.directory, String.format("frame_%06d.png", this.count));
+    if (!ImageIO.write(this.image, "png", file)) {
+      throw new IOException("No PNG writer available");
+    }
+    this.count += 1;
+  }
+
+  public void end() {
+    this.image = null;
+    this.pixels = null;
+  }
+}
+
+// to write the frames as one looping animated GIF. Every frame after the first only holds
+// the rectangle that changed, drawn over the frames before it
+class GifSink implements FrameSink {
+  File file;
+  // the time each frame is shown for, in hundredths of a second
+  int delay;
+  ImageWriter writer;
+  ImageOutputStream out;
+
+  GifSink(File file, int delay) {
+    this.file = file;
+    this.delay = delay;
+  }
+
+  // Effect: opens the file and writes the full first frame
+  public void begin(byte[] pixels, int width, int height) throws IOException {
+    this.writer = ImageIO.getImageWritersByFormatName("gif").next();
+    if (this.file.exists() && !this.file.delete()) {
+      throw new IOException("Cannot replace " + this.file);
+    }
+    this.out = ImageIO.createImageOutputStream(this.file);
+    this.writer.setOutput(this.out);
+    this.writer.prepareWriteSequence(null);
+    this.write(0, 0, width, height, pixels, true);
+  }
+
+  // Effect: writes the changed rectangle as the next frame
+  public void frame(int x, int y, int width, int height, byte[] patch) throws IOException {
+    this.write(x, y, width, height, patch, false);
+  }
+
+  // Effect: writes the given pixels as a frame at the given position
+  void write(int x, int y, int width, int height, byte[] pixels, boolean first)
+      throws IOException {
+    BufferedImage image = new BufferedImage(FrameExporter.PALETTE,
+        Raster.createInterleavedRaster(new DataBufferByte(pixels, pixels.length), width, height,
+            width, 1, new int[] {0}, null), false, null);
+    ImageTypeSpecifier type = new ImageTypeSpecifier(image);
+    IIOMetadata metadata = this.writer.getDefaultImageMetadata(type, null);
+    String format = metadata.getNativeMetadataFormatName();
+    IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+    IIOMetadataNode descriptor = this.child(root, "ImageDescriptor");
+    descriptor.setAttribute("imageLeftPosition", Integer.toString(x));
+    descriptor.setAttribute("imageTopPosition", Integer.toString(y));
+    descriptor.setAttribute("imageWidth", Integer.toString(width));
+    descriptor.setAttribute("imageHeight", Integer.toString(height));
+    IIOMetadataNode control = this.child(root, "GraphicControlExtension");
+    control.setAttribute("disposalMethod", "doNotDispose");
+    control.setAttribute("userInputFlag", "FALSE");
+    control.setAttribute("transparentColorFlag", "FALSE");
+    control.setAttribute("transparentColorIndex", "0");
+    control.setAttribute("delayTime", Integer.toString(this.delay));
+    if (first) {
+      // loops the animation forever
+      IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+      loop.setAttribute("applicationID", "NETSCAPE");
+      loop.setAttribute("authenticationCode", "2.0");
+      loop.setUserObject(new byte[] {1, 0, 0});
+      this.child(root, "ApplicationExtensions").appendChild(loop);
+    }
+    metadata.setFromTree(format, root);
+    this.writer.writeToSequence(new IIOImage(image, null, metadata), null);
+  }
+
+  // returns the child of the given metadata node with the given name, adding it if needed
+  IIOMetadataNode child(IIOMetadataNode node, String name) {
+    for (int i = 0; i < node.getLength(); i++) {
+      if (node.item(i).getNodeName().equals(name)) {
+        return (IIOMetadataNode) node.item(i);
+      }
+    }
+    IIOMetadataNode child = new IIOMetadataNode(name);
+    node.appendChild(child);
+    return child;
+  }
+
+  // Effect: finishes and closes the file. The file is closed even if it can't be finished,
+  // as after a failed frame
+  public void end() throws IOException {
+    if (this.out == null) {
+      return;
+    }
+    try {
+      this.writer.endWriteSequence();
+    }
+    finally {
+      this.out.close();
+      this.writer.dispose();
+    }
+  }
+}
+
+// to represent a fixed-size block of memory outside of the Java heap, addressed with long
+// indices. A single ByteBuffer holds at most 2GB, so the memory is split into chunks.
+// The JVM caps direct memory at the maximum heap size (-Xmx) unless it is started with
+// -XX:MaxDirectMemorySize, so large buffers need that flag when the heap is kept small
+class OffHeapBuffer {
+  // 1GB per chunk. Chunk sizes are powers of two, so an int never straddles two chunks
+  static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+  ByteBuffer[] chunks;
+  int chunkShift;
+  long chunkMask;
+  // the number of bytes in this buffer
+  long size;
+
+  // allocates a zeroed buffer of the given number of bytes
+  OffHeapBuffer(long size) {
+    this(size, DEFAULT_CHUNK_SIZE);
+  }
+
+  // allocates a zeroed buffer of the given number of bytes, split into chunks of the given size
+  OffHeapBuffer(long size, int chunkSize) {
+    if (chunkSize < 8 || Integer.bitCount(chunkSize) != 1) {
+      throw new IllegalArgumentException("Chunk size must be a power of two of at least 8");
+    }
+    this.size = size;
+    this.chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+    this.chunkMask = chunkSize - 1;
+    int count = (int) ((size + chunkSize - 1) >>> this.chunkShift);
+    this.chunks = new ByteBuffer[count];
+    try {
+      for (int i = 0; i < count; i++) {
+        long remaining = size - ((long) i << this.chunkShift);
+        this.chunks[i] = ByteBuffer.allocateDirect((int) Math.min(chunkSize, remaining))
+            .order(ByteOrder.nativeOrder());
+      }
+    }
+    catch (OutOfMemoryError e) {
+      this.free();
+      OutOfMemoryError error = new OutOfMemoryError(e.getMessage()
+          + ". Raise the limit with -XX:MaxDirectMemorySize");
+      error.initCause(e);
+      throw error;
+    }
+  }
+
+  // returns the byte at the given byte index
+  byte getByte(long i) {
+    return this.chunks[(int) (i >>> this.chunkShift)].get((int) (i & this.chunkMask));
+  }
+
+  // Effect: sets the byte at the given byte index
+  void putByte(long i, byte b) {
+    this.chunks[(int) (i >>> this.chunkShift)].put((int) (i & this.chunkMask), b);
+  }
+
+  // returns the int at the given int index
+  int getInt(long i) {
+    long b = i << 2;
+    return this.chunks[(int) (b >>> this.chunkShift)].getInt((int) (b & this.chunkMask));
+  }
+
+  // Effect: sets the int at the given int index
+  void putInt(long i, int v) {
+    long b = i << 2;
+    this.chunks[(int) (b >>> this.chunkShift)].putInt((int) (b & this.chunkMask), v);
+  }
+
+  // Effect: sets every byte of this buffer to 0
+  void clear() {
+    for (ByteBuffer chunk : this.chunks) {
+      int i = 0;
+      for (; i + 8 <= chunk.capacity(); i += 8) {
+        chunk.putLong(i, 0L);
+      }
+      for (; i < chunk.capacity(); i++) {
+        chunk.put(i, (byte) 0);
+      }
+    }
+  }
+
+  // Effect: gives this buffer's memory back right away instead of when the garbage
+  // collector gets to it. The buffer is empty afterwards, so any later access throws
+  // rather than touching freed memory
+  void free() {
+    ByteBuffer[] old = this.chunks;
+    this.chunks = new ByteBuffer[0];
+    this.size = 0;
+    for (ByteBuffer chunk : old) {
+      if (chunk != null) {
+        release(chunk);
+      }
+    }
+  }
+
+  // Effect: frees the given direct buffer with sun.misc.Unsafe.invokeCleaner. On a JVM
+  // without it the buffer is left for the garbage collector
+  static void release(ByteBuffer chunk) {
+    try {
+      java.lang.reflect.Field field = Class.forName("sun.misc.Unsafe")
+          .getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      Object unsafe = field.get(null);
+      unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafe, chunk);
+    }
+    catch (ReflectiveOperationException | RuntimeException e) {
+      // left for the garbage collector
+    }
+  }
+}
+
+// to represent a maze whose walls, union-find and solver arrays all live off the Java heap,
+// for mazes far too large for the Vertex/Edge graph of MazeWorld. Cells are numbered as in
+// every GridMaze, so the heap solvers and analysis run on it too while it fits their arrays.
+// Its own generator visits the edges in a seeded permutation instead of sorting weighted
+// edges, so a seed gives a different maze than it does in MazeWorld. Every passage costs 1.
+// A maze takes 5.25 bytes of direct memory per cell, which by default must fit under -Xmx:
+// a 5000x5000 maze needs about 131MB, and 100 million cells need about 525MB, so run
+// with e.g. -Xmx32m -XX:MaxDirectMemorySize=1g. Call free when done with a maze, since
+// the garbage collector may not notice a small heap object holding that much memory
+class OffHeapMaze extends GridMaze {
+  // how the solver reached a cell: UNSEEN, START, or one more than the direction it moved
+  static final byte UNSEEN = 0;
+  static final byte START = 5;
+
+  // two bits per cell: the passage to the right neighbor, then the passage to the bottom one
+  OffHeapBuffer walls;
+  // the union-find parents while generating, reused as the solver's queue
+  OffHeapBuffer ints;
+  // the union-find ranks while generating, reused as the solver's came-from directions
+  OffHeapBuffer bytes;
+
+  // the keys and half width of the permutation used to visit the edges in random order
+  long[] keys;
+  int halfBits;
+  long halfMask;
+
+  // the number of cells the last solve took off its queue
+  long explored;
+
+  // allocates a maze of the given size with every wall up
+  OffHeapMaze(int width, int height) {
+    if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Maze must have between 1 and 2^31 - 1 cells");
+    }
+    this.width = width;
+    this.height = height;
+    long cells = this.cells();
+    this.walls = new OffHeapBuffer((cells * 2 + 7) / 8);
+    this.ints = new OffHeapBuffer(cells * 4);
+    this.bytes = new OffHeapBuffer(cells);
+    this.keys = new long[4];
+    // the edges are numbered cell * 2 + direction, so there are 2 * cells edge numbers
+    this.halfBits = 1;
+    while ((1L << (2 * this.halfBits)) < cells * 2) {
+      this.halfBits += 1;
+    }
+    this.halfMask = (1L << this.halfBits) - 1;
+  }
+
+  // Effect: carves a perfect maze with Kruskal's algorithm. Instead of sorting a list of
+  // randomly weighted edges, the edges are visited in the order of a seeded random
+  // permutation, which has the same effect without storing any edges
+  void generate(long seed) {
+    Random r = new Random(seed);
+    for (int i = 0; i < this.keys.length; i++) {
+      this.keys[i] = r.nextLong();
+    }
+    this.walls.clear();
+    this.bytes.clear();
+    long cells = this.cells();
+    for (long c = 0; c < cells; c++) {
+      this.ints.putInt(c, (int) c);
+    }
+
+    long joined = 0;
+    for (long i = 0; i < cells * 2 && joined < cells - 1; i++) {
+      long e = this.permute(i);
+      long from = e >>> 1;
+      long to;
+      if ((e & 1) == 0) {
+        if (from + this.height >= cells) {
+          continue;
+        }
+        to = from + this.height;
+      }
+      else {
+        if (from % this.height == this.height - 1) {
+          continue;
+        }
+        to = from + 1;
+      }
+      int rootFrom = this.find(from);
+      int rootTo = this.find(to);
+      if (rootFrom != rootTo) {
+        this.union(rootFrom, rootTo);
+        this.openPassage(e);
+        joined += 1;
+      }
+    }
+  }
+
+  // maps the given edge number to its position in the seeded random order. Cycle-walks a
+  // four round Feistel network, so every number below 2 * cells is hit exactly once
+  long permute(long i) {
+    long x = i;
+    do {
+      long left = x >>> this.halfBits;
+      long right = x & this.halfMask;
+      for (long key : this.keys) {
+        long next = left ^ (this.mix(right ^ key) & this.halfMask);
+        left = right;
+        right = next;
+      }
+      x = (left << this.halfBits) | right;
+    } while (x >= (long) this.cells() * 2);
+    return x;
+  }
+
+  // scrambles the bits of the given value (the SplitMix64 finalizer)
+  long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  // finds the representative of the given cell, halving the path along the way
+  int find(long c) {
+    int cur = (int) c;
+    int parent = this.ints.getInt(cur);
+    while (parent != cur) {
+      int grandparent = this.ints.getInt(parent);
+      this.ints.putInt(cur, grandparent);
+      cur = grandparent;
+      parent = this.ints.getInt(cur);
+    }
+    return cur;
+  }
+
+  // Effect: joins the two given representatives, keeping the trees shallow by rank
+  void union(int a, int b) {
+    byte rankA = this.bytes.getByte(a);
+    byte rankB = this.bytes.getByte(b);
+    if (rankA < rankB) {
+      this.ints.putInt(a, b);
+    }
+    else if (rankA > rankB) {
+      this.ints.putInt(b, a);
+    }
+    else {
+      this.ints.putInt(b, a);
+      this.bytes.putByte(a, (byte) (rankA + 1));
+    }
+  }
+
+  // Effect: knocks down the wall for the given edge number
+  void openPassage(long e) {
+    this.walls.putByte(e >>> 3, (byte) (this.walls.getByte(e >>> 3) | (1 << (e & 7))));
+  }
+
+  // is there a passage for the given edge number?
+  boolean isOpen(long e) {
+    return (this.walls.getByte(e >>> 3) & (1 << (e & 7))) != 0;
+  }
+
+  // is there a passage from the given cell to its right neighbor?
+  boolean canGoRight(long c) {
+    return this.isOpen(c * 2);
+  }
+
+  // is there a passage from the given cell to its bottom neighbor?
+  boolean canGoDown(long c) {
+    return this.isOpen(c * 2 + 1);
+  }
+
+  // returns the neighbor of the given cell in the given direction, or -1 for a wall
+  int neighbor(int c, int dir) {
+    if (dir == MoveLog.UP) {
+      return c % this.height > 0 && this.canGoDown(c - 1) ? c - 1 : -1;
+    }
+    if (dir == MoveLog.DOWN) {
+      return this.canGoDown(c) ? c + 1 : -1;
+    }
+    if (dir == MoveLog.LEFT) {
+      return c >= this.height && this.canGoRight(c - this.height) ? c - this.height : -1;
+    }
+    return this.canGoRight(c) ? c + this.height : -1;
+  }
+
+  // returns 1 for a passage from the given cell in the given direction, or 0 for a wall
+  int cost(int c, int dir) {
+    return this.neighbor(c, dir) == -1 ? 0 : 1;
+  }
+
+  // counts the cells that can be reached from the top-left cell
+  long countReachable() {
+    return this.search(-1);
+  }
+
+  // counts the passages in the maze
+  long countPassages() {
+    long count = 0;
+    for (long e = 0; e < (long) this.cells() * 2; e++) {
+      if (this.isOpen(e)) {
+        count += 1;
+      }
+    }
+    return count;
+  }
+
+  // solves the maze with a breadth first search from the top-left to the bottom-right cell,
+  // and returns the number of cells in the solution, or 0 if there is none.
+  // Must be called after generate, since it reuses the union-find arrays
+  long solve() {
+    int end = this.cells() - 1;
+    this.search(end);
+    return this.bytes.getByte(end) == UNSEEN ? 0 : this.pathLength(end);
+  }
+
+  // Effect: runs a breadth first search from the top-left cell until it takes the given
+  // target off its queue, or through the whole maze for a target of -1. Leaves how each
+  // reached cell was reached in bytes, and the number of cells taken off the queue in
+  // explored. Returns how many cells were reached. Reuses the union-find arrays
+  long search(int target) {
+    this.bytes.clear();
+    long head = 0;
+    long tail = 0;
+    this.ints.putInt(tail++, 0);
+    this.bytes.putByte(0, START);
+    this.explored = 0;
+
+    while (head < tail) {
+      int c = this.ints.getInt(head++);
+      this.explored += 1;
+      if (c == target) {
+        return tail;
+      }
+      for (int dir = 0; dir < 4; dir++) {
+        int n = this.neighbor(c, dir);
+        if (n != -1) {
+          tail = this.visit(n, dir, tail);
+        }
+      }
+    }
+    return tail;
+  }
+
+  // adds the given cell, reached by moving in the given direction, to the queue if it hasn't
+  // been seen yet, and returns the new tail
+  long visit(int c, int dir, long tail) {
+    if (this.bytes.getByte(c) != UNSEEN) {
+      return tail;
+    }
+    this.bytes.putByte(c, (byte) (dir + 1));
+    this.ints.putInt(tail, c);
+    return tail + 1;
+  }
+
+  // counts the cells on the way back from the given cell to the start
+  long pathLength(int c) {
+    long length = 1;
+    byte from = this.bytes.getByte(c);
+    while (from != START) {
+      int dir = from - 1;
+      if (dir == MoveLog.UP) {
+        c = c + 1;
+      }
+      else if (dir == MoveLog.DOWN) {
+        c = c - 1;
+      }
+      else if (dir == MoveLog.LEFT) {
+        c = c + this.height;
+      }
+      else {
+        c = c - this.height;
+      }
+      length += 1;
+      from = this.bytes.getByte(c);
+    }
+    return length;
+  }
+
+  // Effect: gives the maze's direct memory back right away. The maze can't be used after
+  void free() {
+    this.walls.free();
+    this.ints.free();
+    this.bytes.free();
+  }
+}
+
+
+// to measure how the solvers slow down as braid mode adds loops to a maze. Run with
+// java BraidBenchmark [width] [height] [seed]
+class BraidBenchmark {
+  // the braid fractions to measure
+  static final double[] BRAIDS = {0, 0.05, 0.1, 0.25, 0.5, 1};
+  // how many times each solver is run per maze, after one warm up run
+  static final int RUNS = 5;
+
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+    System.out.println("braid,passages,bfs_ms,bfs_explored,path_cells,"
+        + "dijkstra_ms,dijkstra_settled,astar_ms,astar_settled");
+    for (double braid : BRAIDS) {
+      MazeWorld world = new MazeWorld(width, height, seed, false, braid);
+      TerrainSolver solver = new TerrainSolver(new FlatMaze(world));
+
+      world.performSearch("b");
+      long start = System.nanoTime();
+      for (int i = 0; i < RUNS; i++) {
+        world.performSearch("b");
+      }
+      double bfs = (System.nanoTime() - start) / 1e6 / RUNS;
+      int explored = world.explored.size();
+      int cells = world.path.size();
+
+      solver.solve(false);
+      start = System.nanoTime();
+      for (int i = 0; i < RUNS; i++) {
+        solver.solve(false);
+      }
+      double dijkstra = (System.nanoTime() - start) / 1e6 / RUNS;
+      int dijkstraSettled = solver.settled;
+
+      solver.solve(true);
+      start = System.nanoTime();
+      for (int i = 0; i < RUNS; i++) {
+        solver.solve(true);
+      }
+      double astar = (System.nanoTime() - start) / 1e6 / RUNS;
+
+      System.out.println(braid + "," + world.edgesInTree.size() + ","
+          + String.format("%.2f", bfs) + "," + explored + "," + cells + ","
+          + String.format("%.2f", dijkstra) + "," + dijkstraSettled + ","
+          + String.format("%.2f", astar) + "," + solver.settled);
+    }
+  }
+}
+
+
+// to check the properties every generated maze and every solver must have, whatever its
+// seed and size. Each check returns a description of the first problem it finds, or "" if
+// there is none, so a failing test says what went wrong. The spanning tree and movement
+// checks use their own simple algorithms rather than the code they are checking, and on
+// small mazes the solvers are checked against cheapestCost, which shares none of their code
+class MazeProperties {
+  // the sizes the scale tests run at: width, height, the number of seeds, and the most
+  // milliseconds generating and checking all of those mazes may take. The budgets leave
+  // plenty of room on a slow machine, but not enough for a quadratic slowdown
+  static final int[][] SCALES = {
+      {3, 3, 2000, 6000},
+      {11, 7, 1500, 8000},
+      {40, 30, 200, 8000},
+      {100, 100, 20, 10000},
+      {316, 316, 2, 15000},
+      {1000, 1000, 1, 40000}};
+
+  // the sizes the off-heap maze is checked at, with the same columns as SCALES
+  static final int[][] OFF_HEAP_SCALES = {
+      {7, 5, 500, 4000},
+      {300, 200, 5, 8000},
+      {2000, 2000, 1, 40000}};
+
+  // the largest maze that is also solved and walked through MazeWorld itself, whose
+  // searches and moves are slower than the flattened solvers
+  static final int GAME_CHECK_CELLS = 10000;
+
+  // the largest off-heap maze that is also checked by the solvers and analysis on the heap,
+  // whose arrays would take more memory than the maze itself
+  static final int HEAP_CHECK_CELLS = 1 << 20;
+
+  // the largest maze whose cheapest path is also found by cheapestCost, which takes time
+  // proportional to the cells times the sweeps it needs
+  static final int ORACLE_CELLS = 2500;
+
+  // checks that the passages of the given maze join neighboring cells inside the grid, with
+  // no passage listed twice, and that there are width * height - 1 of them plus the walls
+  // knocked down by braid mode. Then checks that they connect every cell, and, without
+  // braid, that they contain no cycle
+  String checkPassages(MazeWorld world) {
+    int cells = world.width * world.height;
+    int walls = (world.width - 1) * world.height + world.width * (world.height - 1);
+    int loops = (int) Math.round(world.braid * (walls - (cells - 1)));
+    if (world.edgesInTree.size() != cells - 1 + loops) {
+      return "expected " + (cells - 1 + loops) + " passages, found " + world.edgesInTree.size();
+    }
+    if (world.edgesInTree.size() + world.worklist.size() != walls) {
+      return "passages and walls left add up to " + (world.edgesInTree.size()
+          + world.worklist.size()) + ", not " + walls;
+    }
+    // a union-find over cell numbers x * height + y, to find cycles
+    int[] parent = new int[cells];
+    for (int c = 0; c < cells; c++) {
+      parent[c] = c;
+    }
+    boolean[] right = new boolean[cells];
+    boolean[] down = new boolean[cells];
+    int cycles = 0;
+    for (Edge e : world.edgesInTree) {
+      int dx = Math.abs(e.from.x - e.to.x);
+      int dy = Math.abs(e.from.y - e.to.y);
+      if (dx + dy != 1 || Math.min(e.from.x, e.to.x) < 0 || Math.max(e.from.x, e.to.x)
+          >= world.width || Math.min(e.from.y, e.to.y) < 0
+          || Math.max(e.from.y, e.to.y) >= world.height) {
+        return "passage from " + this.show(e.from) + " to " + this.show(e.to) + " is not "
+            + "between neighbors in the grid";
+      }
+      int c = Math.min(e.from.x, e.to.x) * world.height + Math.min(e.from.y, e.to.y);
+      boolean[] seen = dx == 1 ? right : down;
+      if (seen[c]) {
+        return "passage from " + this.show(e.from) + " to " + this.show(e.to) + " is repeated";
+      }
+      seen[c] = true;
+      int a = this.root(parent, e.from.x * world.height + e.from.y);
+      int b = this.root(parent, e.to.x * world.height + e.to.y);
+      if (a == b) {
+        cycles += 1;
+      }
+      else {
+        parent[a] = b;
+      }
+    }
+    if (cycles != loops) {
+      return "expected " + loops + " passages closing loops, found " + cycles;
+    }
+    int reached = this.countReachable(new FlatMaze(world));
+    if (reached != cells) {
+      return "only " + reached + " of " + cells + " cells can be reached from the start";
+    }
+    return "";
+  }
+
+  // finds the root of the given cell in the given union-find, halving the path
+  int root(int[] parent, int c) {
+    while (parent[c] != c) {
+      parent[c] = parent[parent[c]];
+      c = parent[c];
+    }
+    return c;
+  }
+
+  // counts the cells reachable from the top-left cell of the given maze
+  int countReachable(GridMaze maze) {
+    int cells = maze.cells();
+    boolean[] seen = new boolean[cells];
+    int[] stack = new int[cells];
+    int top = 0;
+    int count = 0;
+    stack[top++] = 0;
+    seen[0] = true;
+    while (top > 0) {
+      int c = stack[--top];
+      count += 1;
+      for (int dir = 0; dir < 4; dir++) {
+        int n = maze.neighbor(c, dir);
+        if (n != -1 && !seen[n]) {
+          seen[n] = true;
+          stack[top++] = n;
+        }
+      }
+    }
+    return count;
+  }
+
+  // checks that Dijkstra's algorithm, A* search and the junction graph all find paths of
+  // the same cost, that the junction graph's path really walks through passages and costs
+  // what it claims, and that MazeStats agrees on the solution length without terrain.
+  // Small mazes are also searched through MazeWorld, whose breadth first search must
+  // find a shortest path
+  String checkSolvers(MazeWorld world) {
+    FlatMaze maze = new FlatMaze(world);
+    TerrainSolver solver = new TerrainSolver(maze);
+    int dijkstra = solver.solve(false);
+    int astar = solver.solve(true);
+    if (dijkstra < 0 || astar != dijkstra) {
+      return "Dijkstra found a path costing " + dijkstra + " but A* found " + astar;
+    }
+    if (maze.cells() <= ORACLE_CELLS) {
+      int cheapest = this.cheapestCost(maze);
+      if (cheapest != dijkstra) {
+        return "Dijkstra found a path costing " + dijkstra + " but the cheapest costs "
+            + cheapest;
+      }
+    }
+    JunctionGraph graph = new JunctionGraph(maze);
+    int junction = graph.solve();
+    if (junction != dijkstra) {
+      return "Dijkstra found a path costing " + dijkstra + " but the junction graph found "
+          + junction;
+    }
+    int[] cells = graph.cellPath();
+    if (cells[0] != 0 || cells[cells.length - 1] != maze.cells() - 1) {
+      return "the junction graph's path doesn't go from the start to the end";
+    }
+    int walked = 0;
+    for (int i = 1; i < cells.length; i++) {
+      int cost = this.passageCost(maze, cells[i - 1], cells[i]);
+      if (cost == 0) {
+        return "the junction graph's path goes through a wall at cell " + cells[i];
+      }
+      walked += cost;
+    }
+    if (walked != dijkstra) {
+      return "the junction graph's path costs " + walked + ", not " + dijkstra;
+    }
+    if (!world.terrain) {
+      int length = new MazeStats(world.seed, maze).solutionLength;
+      if (length != dijkstra + 1) {
+        return "MazeStats found a solution of " + length + " cells, not " + (dijkstra + 1);
+      }
+    }
+
+    if (maze.cells() <= GAME_CHECK_CELLS) {
+      world.performSearch("b");
+      if (!world.terrain && world.path.size() != dijkstra + 1) {
+        return "breadth first search found a path of " + world.path.size() + " cells, not "
+            + (dijkstra + 1);
+      }
+      String walk = this.checkGamePath(world, maze);
+      if (!walk.equals("")) {
+        return "breadth first search: " + walk;
+      }
+      world.performSearch("d");
+      walk = this.checkGamePath(world, maze);
+      if (!walk.equals("")) {
+        return "depth first search: " + walk;
+      }
+      world.performWeightedSearch(true);
+      if (world.pathCost() != dijkstra + 1) {
+        return "A* in the game found a path costing " + world.pathCost() + ", not "
+            + (dijkstra + 1);
+      }
+    }
+    return "";
+  }
+
+  // returns the cost of the cheapest path from the top-left to the bottom-right cell, or -1
+  // if there is none, with Bellman-Ford relaxation: every passage is relaxed in sweeps over
+  // the cells, alternately forwards and backwards, until a sweep changes nothing
+  int cheapestCost(GridMaze maze) {
+    int cells = maze.cells();
+    int[] dist = new int[cells];
+    Arrays.fill(dist, Integer.MAX_VALUE);
+    dist[0] = 0;
+    boolean changed = true;
+    for (int sweep = 0; changed; sweep++) {
+      changed = false;
+      for (int i = 0; i < cells; i++) {
+        int c = sweep % 2 == 0 ? i : cells - 1 - i;
+        for (int dir = 0; dir < 4 && dist[c] != Integer.MAX_VALUE; dir++) {
+          int n = maze.neighbor(c, dir);
+          if (n != -1 && dist[c] + maze.cost(c, dir) < dist[n]) {
+            dist[n] = dist[c] + maze.cost(c, dir);
+            changed = true;
+          }
+        }
+      }
+    }
+    return dist[cells - 1] == Integer.MAX_VALUE ? -1 : dist[cells - 1];
+  }
+
+  // checks that the game's path runs from the end back to the start through passages
+  String checkGamePath(MazeWorld world, GridMaze maze) {
+    ArrayList<Vertex> path = world.path;
+    if (path.isEmpty() || !this.show(path.get(0)).equals(
+        "(" + (world.width - 1) + ", " + (world.height - 1) + ")")
+        || !this.show(path.get(path.size() - 1)).equals("(0, 0)")) {
+      return "the path doesn't run from the end to the start";
+    }
+    for (int i = 1; i < path.size(); i++) {
+      Vertex from = path.get(i - 1);
+      Vertex to = path.get(i);
+      if (this.passageCost(maze, from.x * world.height + from.y,
+          to.x * world.height + to.y) == 0) {
+        return "the path goes through a wall between " + this.show(from) + " and "
+            + this.show(to);
+      }
+    }
+    return "";
+  }
+
+  // returns the cost of the passage between the two given cells, or 0 if there is none
+  int passageCost(GridMaze maze, int a, int b) {
+    for (int dir = 0; dir < 4; dir++) {
+      if (maze.neighbor(a, dir) == b) {
+        return maze.cost(a, dir);
+      }
+    }
+    return 0;
+  }
+
+  // checks that the given number of random key presses only ever move the player one cell
+  // through a passage, that the score goes up by exactly that passage's cost, and that
+  // replaying the recorded moves ends in the same place with the same score
+  String checkMovement(MazeWorld world, long seed, int moves) {
+    FlatMaze maze = new FlatMaze(world);
+    Random r = new Random(seed);
+    String[] keys = {"up", "down", "left", "right"};
+    for (int i = 0; i < moves; i++) {
+      int x = world.player.x;
+      int y = world.player.y;
+      int score = world.score;
+      String key = keys[r.nextInt(4)];
+      world.onKeyEvent(key);
+      int toX = x;
+      int toY = y;
+      if (key.equals("up")) {
+        toY -= 1;
+      }
+      else if (key.equals("down")) {
+        toY += 1;
+      }
+      else if (key.equals("left")) {
+        toX -= 1;
+      }
+      else {
+        toX += 1;
+      }
+      int cost = 0;
+      if (toX >= 0 && toX < world.width && toY >= 0 && toY < world.height) {
+        cost = this.passageCost(maze, x * world.height + y, toX * world.height + toY);
+      }
+      int expectedX = cost == 0 ? x : toX;
+      int expectedY = cost == 0 ? y : toY;
+      if (world.player.x != expectedX || world.player.y != expectedY) {
+        return "pressing " + key + " at (" + x + ", " + y + ") moved the player to ("
+            + world.player.x + ", " + world.player.y + ")";
+      }
+      if (world.score != score + cost) {
+        return "pressing " + key + " at (" + x + ", " + y + ") changed the score by "
+            + (world.score - score) + ", not " + cost;
+      }
+    }
+    Replayer replayer = new Replayer(world.log);
+    replayer.replay(world.log);
+    if (replayer.x != world.player.x || replayer.y != world.player.y
+        || replayer.score != world.score) {
+      return "the replay ended at (" + replayer.x + ", " + replayer.y + ") with score "
+          + replayer.score + ", the game at " + this.show(world.arrOfVertices
+          .get(world.player.x).get(world.player.y)) + " with score " + world.score;
+    }
+    return "";
+  }
+
+  // checks that the given generated off-heap maze has cells - 1 passages that reach every
+  // cell, which makes it a spanning tree, and that it can be solved
+  String checkOffHeap(OffHeapMaze maze) {
+    long cells = maze.cells();
+    long passages = maze.countPassages();
+    if (passages != cells - 1) {
+      return "expected " + (cells - 1) + " passages, found " + passages;
+    }
+    for (int y = 0; y < maze.height; y++) {
+      if (maze.canGoRight(cells - maze.height + y)) {
+        return "row " + y + " has a passage out of the right side of the maze";
+      }
+    }
+    for (long x = 0; x < maze.width; x++) {
+      if (maze.canGoDown(x * maze.height + maze.height - 1)) {
+        return "column " + x + " has a passage out of the bottom of the maze";
+      }
+    }
+    long reached = maze.countReachable();
+    if (reached != cells) {
+      return "only " + reached + " of " + cells + " cells can be reached from the start";
+    }
+    long length = maze.solve();
+    if (length < maze.width + maze.height - 1 || length > cells) {
+      return "solution of " + length + " cells is impossible";
+    }
+    // the heap solvers and analysis run on the same maze, while it fits their arrays
+    if (cells <= HEAP_CHECK_CELLS) {
+      int cost = new TerrainSolver(maze).solve(false);
+      if (cost + 1 != length) {
+        return "Dijkstra's algorithm found a path of " + (cost + 1) + " cells, not " + length;
+      }
+      if (new JunctionGraph(maze).solve() != cost) {
+        return "the junction graph's path doesn't match Dijkstra's";
+      }
+      if (new MazeStats(0, maze).solutionLength != length) {
+        return "MazeStats found a different solution length";
+      }
+      if (this.countReachable(maze) != cells) {
+        return "not every cell can be reached through neighbor";
+      }
+    }
+    return "";
+  }
+
+  // shows the position of the given vertex
+  String show(Vertex v) {
+    return "(" + v.x + ", " + v.y + ")";
+  }
+}
+
+// to record the frames an export produces, for testing
+class FrameRecorder implements FrameSink {
+  byte[] first;
+  ArrayList<int[]> rects = new ArrayList<int[]>();
+  ArrayList<byte[]> patches = new ArrayList<byte[]>();
+  boolean ended = false;
+  // the number of frames to take before failing, or -1 to never fail
+  int failAfter = -1;
+
+  public void begin(byte[] pixels, int width, int height) {
+    this.first = pixels;
+  }
+
+  public void frame(int x, int y, int width, int height, byte[] patch) throws IOException {
+    if (this.rects.size() == this.failAfter) {
+      throw new IOException("Disk full");
+    }
+    this.rects.add(new int[] {x, y, width, height});
+    this.patches.add(patch);
+  }
+
+  public void end() {
+    this.ended = true;
+  }
+}
+
+//to represent Examples of Mazes
+class ExamplesMazeWorld {
+  MazeWorld world;
+
+  ArrayList<ArrayList<Vertex>> grid;
+  ArrayList<ArrayList<Vertex>> grid1;
+  ArrayList<ArrayList<Vertex>> grid3;
+
+  ArrayList<Vertex> reconstructedpath;
+
+  ArrayList<Vertex> list1;
+  ArrayList<Vertex> list2;
+  ArrayList<Vertex> list3;
+  ArrayList<Vertex> list4;
+
+  ArrayList<Vertex> gridlist1;
+  ArrayList<Vertex> gridlist2;
+  ArrayList<Vertex> gridlist3;
+
+  ArrayList<Edge> edges;
+  ArrayList<Edge> edges2;
+  ArrayList<Edge> sortededges;
+  ArrayList<Edge> edgesintree;
+
+  Vertex a;
+  Vertex b;
+  Vertex c;
+  Vertex d;
+  Vertex e;
+  Vertex f;
+
+  Vertex g;
+  Vertex h;
+  Vertex i;
+  Vertex j;
+  Vertex k;
+  Vertex l;
+
+  Vertex a1;
+  Vertex a2;
+  Vertex a3;
+  Vertex a4;
+  Vertex a5;
+  Vertex a6;
+  Vertex a7;
+  Vertex a8;
+  Vertex a9;
+
+  Edge eToC;
+  Edge cToD;
+  Edge aToB;
+  Edge bToE;
+  Edge bToC;
+  Edge fToD;
+  Edge aToE;
+  Edge bToF;
+
+  Edge gToH;
+  Edge gToJ;
+  Edge hToI;
+  Edge hToK;
+  Edge jToI;
+  Edge jToK;
+  Edge kToI;
+  Edge iToL;
+
+  HashMap<Vertex, Vertex> representatives;
+  HashMap<Vertex, Vertex> linkedrepresentatives;
+  HashMap<Vertex, Vertex> cameFromEdge;
+
+  Player player;
+
+  // a 3x2 flattened maze: a corridor along the top to (2,0) and down to the end, with a
+  // side branch down from (0,0) and right to (1,1). Cells are numbered x * 2 + y:
+  // (0,0)=0 (0,1)=1 (1,0)=2 (1,1)=3 (2,0)=4 (2,1)=5
+  FlatMaze branchMaze;
+
+  // initializes the data
+  void initData() {
+    this.world = new MazeWorld(37, 53, 2024);
+
+    this.branchMaze = new FlatMaze(3, 2);
+    this.branchMaze.rightCost[0] = 1;
+    this.branchMaze.rightCost[2] = 1;
+    this.branchMaze.downCost[4] = 1;
+    this.branchMaze.downCost[0] = 1;
+    this.branchMaze.rightCost[1] = 1;
+    
+    
+    // vertices of map
+    this.a = new Vertex(0, 0, new ArrayList<Edge>());
+    this.b = new Vertex(0, 1, new ArrayList<Edge>());
+    this.c = new Vertex(0, 2, new ArrayList<Edge>());
+    this.d = new Vertex(1, 0, new ArrayList<Edge>());
+    this.e = new Vertex(1, 1, new ArrayList<Edge>());
+    this.f = new Vertex(1, 2, new ArrayList<Edge>());
+
+    // example of edges in a map
+    this.eToC = new Edge(this.e, this.c, 15);
+    this.cToD = new Edge(this.c, this.d, 25);
+    this.aToB = new Edge(this.a, this.b, 30);
+    this.bToE = new Edge(this.b, this.e, 35);
+    this.bToC = new Edge(this.b, this.c, 40);
+    this.fToD = new Edge(this.f, this.d, 50);
+    this.aToE = new Edge(this.a, this.e, 50);
+    this.bToF = new Edge(this.b, this.f, 50);
+
+    // examples of vertices
+    this.g = new Vertex(0, 0, new ArrayList<Edge>());
+    this.h = new Vertex(0, 1, new ArrayList<Edge>());
+    this.i = new Vertex(0, 2, new ArrayList<Edge>());
+    this.j = new Vertex(1, 0, new ArrayList<Edge>());
+    this.k = new Vertex(1, 1, new ArrayList<Edge>());
+    this.i = new Vertex(1, 2, new ArrayList<Edge>());
+
+    // examples of vertices
+    this.g = new Vertex(0, 0, new ArrayList<Edge>());
+    this.h = new Vertex(0, 1, new ArrayList<Edge>());
+    this.i = new Vertex(0, 2, new ArrayList<Edge>());
+    this.j = new Vertex(1, 0, new ArrayList<Edge>());
+    this.k = new Vertex(1, 1, new ArrayList<Edge>());
+    this.i = new Vertex(1, 2, new ArrayList<Edge>());
+
+    // examples of vertices
+    this.a1 = new Vertex(0, 0, new ArrayList<Edge>());
+    this.a2 = new Vertex(0, 1, new ArrayList<Edge>());
+    this.a3 = new Vertex(0, 2, new ArrayList<Edge>());
+    this.a4 = new Vertex(1, 0, new ArrayList<Edge>());
+    this.a5 = new Vertex(1, 1, new ArrayList<Edge>());
+    this.a6 = new Vertex(1, 2, new ArrayList<Edge>());
+    this.a7 = new Vertex(1, 0, new ArrayList<Edge>());
+    this.a8 = new Vertex(1, 1, new ArrayList<Edge>());
+    this.a9 = new Vertex(1, 2, new ArrayList<Edge>());
+
+    // examples of edges
+    this.gToH = new Edge(this.g, this.h, 1);
+    this.gToJ = new Edge(this.g, this.j, 1);
+    this.hToI = new Edge(this.h, this.i, 1);
+    this.hToK = new Edge(this.h, this.k, 1);
+    this.iToL = new Edge(this.i, this.l, 1);
+    this.jToK = new Edge(this.j, this.k, 1);
+    this.kToI = new Edge(this.k, this.i, 1);
+
+    this.list3 = new ArrayList<Vertex>(Arrays.asList(this.g, this.h, this.i));
+    this.list4 = new ArrayList<Vertex>(Arrays.asList(this.j, this.k, this.l));
+    this.grid1 = new ArrayList<ArrayList<Vertex>>(Arrays.asList(this.list3, this.list4));
 
     this.edges2 = new ArrayList<Edge>(
         Arrays.asList(this.gToH, this.gToJ, this.hToI, this.hToK, this.iToL, this.jToK, this.kToI));
@@ -691,7 +3133,7 @@ class ExamplesMazeWorld {
  
   void testGame(Tester t) {
     world = new MazeWorld();
-    world.bigBang(world.width * 10, world.height * 10, 0.001);
+    world.bigBang(world.viewWidth * 10, world.viewHeight * 10, 0.001);
   }
 
   // tests initMaze
@@ -716,6 +3158,8 @@ class ExamplesMazeWorld {
   void testKruskal(Tester t) {
     this.initData();
     t.checkExpect(this.world.edgesInTree.size(), world.height * world.width - 1);
+    // a spanning tree: every cell connected, no cycles, no repeated passages
+    t.checkExpect(new MazeProperties().checkPassages(this.world), "");
     // edgesinTree are sorted
     for (int i = 0; i < this.world.edgesInTree.size() - 1; i++) {
       Edge first = this.world.edgesInTree.get(i);
@@ -728,6 +3172,9 @@ class ExamplesMazeWorld {
   void testFind(Tester t) {
     this.initData();
     t.checkExpect(this.world.find(this.linkedrepresentatives, this.a), this.e);
+    t.checkExpect(this.world.find(this.linkedrepresentatives, this.f), this.e);
+    // the path from f is compressed
+    t.checkExpect(this.linkedrepresentatives.get(this.f), this.e);
   }
 
   // tests union
@@ -753,17 +3200,130 @@ class ExamplesMazeWorld {
     t.checkExpect(this.world.canTravelTo(0, 0, 0, 0), true);
   }
 
+  // tests addToPlayerPath
+  void testAddToPlayerPath(Tester t) {
+    this.initData();
+    Vertex v = this.world.arrOfVertices.get(1).get(1);
+    t.checkExpect(v.isOnPlayerPath, false);
+    this.world.addToPlayerPath(v);
+    t.checkExpect(v.isOnPlayerPath, true);
+    t.checkExpect(this.world.playerPath.get(this.world.playerPath.size() - 1), v);
+  }
+
+  // tests updateCamera
+  void testUpdateCamera(Tester t) {
+    MazeWorld big = new MazeWorld(150, 20);
+    t.checkExpect(big.viewWidth, MazeWorld.MAX_VIEW_WIDTH);
+    t.checkExpect(big.viewHeight, 20);
+    big.updateCamera();
+    t.checkExpect(big.cameraX, 0);
+    t.checkExpect(big.cameraY, 0);
+    big.player.x = 75;
+    big.updateCamera();
+    t.checkExpect(big.cameraX, 25);
+    big.player.x = 149;
+    big.updateCamera();
+    t.checkExpect(big.cameraX, 50);
+    t.checkExpect(big.cameraY, 0);
+  }
+
+  // tests inView
+  void testInView(Tester t) {
+    MazeWorld big = new MazeWorld(150, 20);
+    big.player.x = 149;
+    big.updateCamera();
+    t.checkExpect(big.inView(149, 19), true);
+    t.checkExpect(big.inView(50, 0), true);
+    t.checkExpect(big.inView(49, 0), false);
+    t.checkExpect(big.inView(60, 20), false);
+  }
+
+  // tests screenX and screenY
+  void testScreenXY(Tester t) {
+    MazeWorld big = new MazeWorld(150, 20);
+    big.player.x = 149;
+    big.updateCamera();
+    t.checkExpect(big.screenX(50), 5);
+    t.checkExpect(big.screenX(149), 995);
+    t.checkExpect(big.screenY(3), 35);
+  }
+
+  // tests makeScene
+  void testMakeScene(Tester t) {
+    MazeWorld big = new MazeWorld(150, 20);
+    big.player.x = 149;
+    big.player.y = 19;
+    t.checkExpect(big.makeScene() != null, true);
+    t.checkExpect(big.cameraX, 50);
+
+    // a 5x1 corridor seen through a 2x1 view of its second and third cells
+    MazeWorld line = new MazeWorld(5, 1, 3);
+    line.viewWidth = 2;
+    line.player.x = 2;
+    line.arrOfVertices.get(0).get(0).isScanned = true;
+    line.arrOfVertices.get(2).get(0).isScanned = true;
+    WorldScene scene = line.makeScene();
+    t.checkExpect(line.cameraX, 1);
+    // the passage into the first cell is drawn by the second, the one out of the third is
+    // drawn by the third, and the last passage is off screen
+    ArrayList<Edge> edges = line.visibleEdges();
+    t.checkExpect(edges.size(), 3);
+    int[] screenX = {0, 10, 20};
+    WorldScene expected = new WorldScene(15, 11);
+    expected.placeImageXY(line.arrOfVertices.get(1).get(0).drawVertex(), 5, 5);
+    expected.placeImageXY(line.arrOfVertices.get(2).get(0).drawVertex(), 15, 5);
+    for (Edge e : edges) {
+      t.checkExpect(edges.indexOf(e) == edges.lastIndexOf(e), true);
+      expected.placeImageXY(e.drawEdge(), screenX[Math.min(e.from.x, e.to.x)], 5);
+    }
+    // neither the end nor the scanned first cell nor the player's path is in view
+    expected.placeImageXY(line.arrOfVertices.get(2).get(0).drawExploredVertex(), 15, 5);
+    expected.placeImageXY(line.player.drawPlayer(), 15, 5);
+    t.checkExpect(scene, expected);
+  }
+
+  // tests visibleEdges against every passage with a cell in view
+  void testVisibleEdges(Tester t) {
+    MazeWorld game = new MazeWorld(30, 20, 8, false, 0.2);
+    game.viewWidth = 7;
+    game.viewHeight = 6;
+    game.player.x = 12;
+    game.player.y = 9;
+    game.updateCamera();
+    int expected = 0;
+    for (Edge e : game.edgesInTree) {
+      if (game.inView(e.from.x, e.from.y) || game.inView(e.to.x, e.to.y)) {
+        expected += 1;
+      }
+    }
+    ArrayList<Edge> edges = game.visibleEdges();
+    t.checkExpect(edges.size(), expected);
+    t.checkExpect(new HashSet<Edge>(edges).size(), expected);
+    boolean touchesView = true;
+    for (Edge e : edges) {
+      touchesView = touchesView
+          && (game.inView(e.from.x, e.from.y) || game.inView(e.to.x, e.to.y));
+    }
+    t.checkExpect(touchesView, true);
+  }
+
   // tests onKeyEvent
   void testOnKeyEvent(Tester t) {
     this.initData();
+    // the player starts in the top-left corner, so can't go up or left
     this.world.onKeyEvent("up");
-    t.checkOneOf(this.player.y, -1, 0);
-    this.world.onKeyEvent("down");
-    t.checkOneOf(this.player.y, 0, 1);
+    t.checkExpect(this.world.player.y, 0);
     this.world.onKeyEvent("left");
-    t.checkOneOf(this.player.x, -1, 0);
+    t.checkExpect(this.world.player.x, 0);
+    boolean canGoDown = this.world.canTravelTo(0, 1, 0, 0);
+    this.world.onKeyEvent("down");
+    t.checkExpect(this.world.player.y, canGoDown ? 1 : 0);
+    this.world.onKeyEvent("up");
+    t.checkExpect(this.world.player.y, 0);
+    boolean canGoRight = this.world.canTravelTo(1, 0, 0, 0);
     this.world.onKeyEvent("right");
-    t.checkOneOf(this.player.x, 0, 1);
+    t.checkExpect(this.world.player.x, canGoRight ? 1 : 0);
+    t.checkExpect(this.world.score, canGoDown ? (canGoRight ? 3 : 2) : (canGoRight ? 1 : 0));
     this.world.onKeyEvent("b");
     t.checkExpect(this.world.explored.size() > 0, true);
     t.checkExpect(this.world.path.size() > 0, true);
@@ -848,8 +3408,11 @@ class ExamplesMazeWorld {
   // tests DrawEdge
   boolean testDrawEdge(Tester t) {
     this.initData();
-    return t.checkExpect(this.aToB.drawEdge(),
+    boolean plain = t.checkExpect(this.aToB.drawEdge(),
         new RectangleImage(9, 9, OutlineMode.SOLID, Color.gray));
+    this.aToB.cost = Edge.MAX_COST;
+    return plain && t.checkExpect(this.aToB.drawEdge(),
+        new RectangleImage(9, 9, OutlineMode.SOLID, new Color(80, 50, 20)));
   }
 
   // tests hashCode
@@ -861,8 +3424,840 @@ class ExamplesMazeWorld {
     t.checkExpect(this.b.equals(o), false);
   }
   
+  // tests the seeded MazeWorld constructor
+  void testSeededMaze(Tester t) {
+    MazeWorld first = new MazeWorld(20, 30, 99);
+    MazeWorld second = new MazeWorld(20, 30, 99);
+    t.checkExpect(first.edgesInTree, second.edgesInTree);
+    second.onKeyEvent("r");
+    t.checkExpect(second.seed == 99, false);
+    t.checkExpect(second.log.seed, second.seed);
+    t.checkExpect(second.log.count, 0);
+    t.checkConstructorException(new IllegalArgumentException("Maze must be at least 1x1"),
+        "MazeWorld", 0, 5, 1L);
+    t.checkConstructorException(new IllegalArgumentException("Maze must be at least 1x1"),
+        "MazeWorld", 5, -1, 1L, true, 0.0);
+  }
+
+  // tests append and get
+  void testMoveLog(Tester t) {
+    MoveLog log = new MoveLog(5, 3, 4, false, 0);
+    for (int i = 0; i < 100; i++) {
+      log.append(i % 4);
+    }
+    t.checkExpect(log.count, 100);
+    t.checkExpect(log.moves.length, 32);
+    boolean same = true;
+    for (int i = 0; i < 100; i++) {
+      same = same && log.get(i) == i % 4;
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(MoveLog.codeFor("left"), MoveLog.LEFT);
+    t.checkExpect(MoveLog.codeFor("b"), -1);
+  }
+
+  // tests toBytes and reading a log back
+  void testMoveLogBytes(Tester t) {
+    MoveLog log = new MoveLog(-12345678901L, 30, 40, true, 0.25);
+    log.append(MoveLog.RIGHT);
+    log.append(MoveLog.DOWN);
+    log.append(MoveLog.UP);
+    log.append(MoveLog.LEFT);
+    log.append(MoveLog.DOWN);
+    byte[] data = log.toBytes();
+    t.checkExpect(data.length, MoveLog.HEADER_SIZE + 2);
+    MoveLog copy = new MoveLog(data);
+    t.checkExpect(copy.seed, -12345678901L);
+    t.checkExpect(copy.width, 30);
+    t.checkExpect(copy.height, 40);
+    t.checkExpect(copy.terrain, true);
+    t.checkExpect(copy.braid, 0.25);
+    t.checkExpect(copy.count, 5);
+    t.checkExpect(copy.get(0), MoveLog.RIGHT);
+    t.checkExpect(copy.get(4), MoveLog.DOWN);
+    t.checkConstructorException(new IllegalArgumentException("Move log is truncated"),
+        "MoveLog", Arrays.copyOf(data, MoveLog.HEADER_SIZE + 1));
+    t.checkExpect(data[0], MoveLog.VERSION);
+    // a log written before the version byte starts with the seed instead
+    t.checkConstructorException(
+        new IllegalArgumentException("Move log is not in version 3 format"),
+        "MoveLog", Arrays.copyOfRange(data, 1, data.length));
+    t.checkConstructorException(
+        new IllegalArgumentException("Move log is not in version 3 format"),
+        "MoveLog", new byte[] {MoveLog.VERSION});
+    // headers describing mazes that can't or shouldn't be built are rejected
+    IllegalArgumentException badSize = new IllegalArgumentException(
+        "Move log maze must have between 1 and 4194304 cells");
+    t.checkConstructorException(badSize, "MoveLog",
+        new MoveLog(1, 0, 5, false, 0).toBytes());
+    t.checkConstructorException(badSize, "MoveLog",
+        new MoveLog(1, 5, -2, false, 0).toBytes());
+    t.checkConstructorException(badSize, "MoveLog",
+        new MoveLog(1, 100000, 100000, false, 0).toBytes());
+    t.checkExpect(new MoveLog(new MoveLog(1, 2048, 2048, false, 0).toBytes()).width, 2048);
+    IllegalArgumentException badBraid = new IllegalArgumentException(
+        "Move log braid must be between 0 and 1");
+    t.checkConstructorException(badBraid, "MoveLog",
+        new MoveLog(1, 5, 5, false, 1.5).toBytes());
+    t.checkConstructorException(badBraid, "MoveLog",
+        new MoveLog(1, 5, 5, false, Double.NaN).toBytes());
+  }
+
+  // tests replay against the moves made in the game, with and without terrain and loops
+  void testReplay(Tester t) {
+    boolean[] terrains = {false, true, false, true};
+    double[] braids = {0, 0, 0.4, 0.4};
+    Random r = new Random(1);
+    String[] keys = {"up", "down", "left", "right"};
+    for (int s = 0; s < terrains.length; s++) {
+      MazeWorld game = new MazeWorld(15, 12, 2024 + s, terrains[s], braids[s]);
+      String where = "terrain " + terrains[s] + ", braid " + braids[s];
+      for (int i = 0; i < 2000; i++) {
+        game.onKeyEvent(keys[r.nextInt(4)]);
+      }
+      Replayer replayer = new Replayer(new MoveLog(game.log.toBytes()));
+      replayer.replay(game.log);
+      t.checkExpect(replayer.x, game.player.x, where);
+      t.checkExpect(replayer.y, game.player.y, where);
+      t.checkExpect(replayer.score, game.score, where);
+      t.checkExpect(replayer.displayedScore(), game.displayedScore(), where);
+      game.performWeightedSearch(false);
+      t.checkExpect(replayer.solutionCost, game.pathCost(), where);
+    }
+  }
+
+  // tests reachedEnd
+  void testReachedEnd(Tester t) {
+    MazeWorld game = new MazeWorld(5, 5, 8);
+    game.performSearch("b");
+    // walks the solution path, which is stored from the end back to the start
+    for (int i = game.path.size() - 1; i > 0; i--) {
+      Vertex from = game.path.get(i);
+      Vertex to = game.path.get(i - 1);
+      if (to.x > from.x) {
+        game.onKeyEvent("right");
+      }
+      else if (to.x < from.x) {
+        game.onKeyEvent("left");
+      }
+      else if (to.y > from.y) {
+        game.onKeyEvent("down");
+      }
+      else {
+        game.onKeyEvent("up");
+      }
+    }
+    Replayer replayer = new Replayer(game.log);
+    replayer.replay(game.log);
+    t.checkExpect(replayer.reachedEnd(), true);
+    t.checkExpect(replayer.displayedScore(), -1);
+  }
+
+  // tests assignCosts
+  void testAssignCosts(Tester t) {
+    MazeWorld plain = new MazeWorld(10, 10, 4);
+    MazeWorld rough = new MazeWorld(10, 10, 4, true);
+    boolean sameTree = true;
+    boolean allOne = true;
+    boolean inRange = true;
+    boolean varied = false;
+    for (int i = 0; i < rough.edgesInTree.size(); i++) {
+      sameTree = sameTree && plain.edgesInTree.get(i).equals(rough.edgesInTree.get(i));
+      allOne = allOne && plain.edgesInTree.get(i).cost == 1;
+      int cost = rough.edgesInTree.get(i).cost;
+      inRange = inRange && cost >= 1 && cost <= Edge.MAX_COST;
+      varied = varied || cost > 1;
+    }
+    t.checkExpect(sameTree, true);
+    t.checkExpect(allOne, true);
+    t.checkExpect(inRange, true);
+    t.checkExpect(varied, true);
+  }
+
+  // tests edgeBetween
+  void testEdgeBetween(Tester t) {
+    MazeWorld game = new MazeWorld(6, 6, 10);
+    Edge e = game.edgesInTree.get(0);
+    t.checkExpect(game.edgeBetween(e.to.x, e.to.y, e.from.x, e.from.y), e);
+    t.checkExpect(game.edgeBetween(e.from.x, e.from.y, e.to.x, e.to.y), e);
+    t.checkExpect(game.edgeBetween(5, 5, 0, 0), null);
+  }
+
+  // tests pathCost
+  void testPathCost(Tester t) {
+    MazeWorld game = new MazeWorld(8, 8, 12, true);
+    t.checkExpect(game.pathCost(), 0);
+    game.performSearch("b");
+    // a perfect maze has only one path, so it is also the cheapest
+    t.checkExpect(game.pathCost(), new TerrainSolver(new FlatMaze(game)).solve(false) + 1);
+    // a 3x1 corridor with passages costing 4 and 6, walked from the end back to the start
+    MazeWorld corridor = new MazeWorld(3, 1, 5);
+    ArrayList<Vertex> row = new ArrayList<Vertex>();
+    for (int x = 2; x >= 0; x--) {
+      row.add(corridor.arrOfVertices.get(x).get(0));
+    }
+    corridor.edgeBetween(1, 0, 0, 0).cost = 4;
+    corridor.edgeBetween(2, 0, 1, 0).cost = 6;
+    corridor.path = row;
+    t.checkExpect(corridor.pathCost(), 11);
+    MazeWorld plain = new MazeWorld(8, 8, 12);
+    plain.performSearch("b");
+    t.checkExpect(plain.pathCost(), plain.path.size());
+  }
+
+  // tests performWeightedSearch
+  void testPerformWeightedSearch(Tester t) {
+    MazeWorld game = new MazeWorld(20, 15, 5, true);
+    game.performSearch("b");
+    ArrayList<Vertex> breadth = new ArrayList<Vertex>(game.path);
+    game.performWeightedSearch(false);
+    // a perfect maze has only one path, whatever it costs
+    t.checkExpect(game.path, breadth);
+    t.checkExpect(game.explored.size() > 0, true);
+    game.onKeyEvent("a");
+    t.checkExpect(game.path, breadth);
+    t.checkExpect(game.counter, 0);
+  }
+
+  // tests kruskal's leftover walls and braidWalls
+  void testBraidWalls(Tester t) {
+    MazeWorld perfect = new MazeWorld(12, 10, 6);
+    // a 12x10 grid has 11 * 10 + 12 * 9 = 218 edges, 119 of them in the tree
+    t.checkExpect(perfect.edgesInTree.size(), 119);
+    t.checkExpect(perfect.worklist.size(), 218 - 119);
+    boolean disjoint = true;
+    for (Edge e : perfect.worklist) {
+      disjoint = disjoint && !perfect.edgesInTree.contains(e);
+    }
+    t.checkExpect(disjoint, true);
+
+    MazeWorld loopy = new MazeWorld(12, 10, 6, false, 0.5);
+    t.checkExpect(loopy.edgesInTree.size(), 119 + 50);
+    t.checkExpect(loopy.worklist.size(), 218 - 119 - 50);
+    // the loops are added on top of the same perfect maze
+    t.checkExpect(loopy.edgesInTree.subList(0, 119).equals(perfect.edgesInTree), true);
+    MazeWorld open = new MazeWorld(12, 10, 6, false, 1);
+    t.checkExpect(open.edgesInTree.size(), 218);
+    t.checkConstructorException(new IllegalArgumentException("Braid must be between 0 and 1"),
+        "MazeWorld", 12, 10, 6L, false, 1.5);
+    t.checkConstructorException(new IllegalArgumentException("Braid must be between 0 and 1"),
+        "MazeWorld", 12, 10, 6L, false, Double.NaN);
+  }
+
+  // tests performSearch in mazes with loops, where there are many paths to the end
+  void testSearchWithLoops(Tester t) {
+    for (int seed = 0; seed < 20; seed++) {
+      MazeWorld loopy = new MazeWorld(15, 11, seed, false, 0.3);
+      loopy.performSearch("b");
+      ArrayList<Vertex> breadth = new ArrayList<Vertex>(loopy.path);
+      TerrainSolver solver = new TerrainSolver(new FlatMaze(loopy));
+      // every passage costs 1, so the cheapest path is a shortest path
+      t.checkExpect(breadth.size(), solver.solve(false) + 1);
+      t.checkExpect(breadth.size(), solver.solve(true) + 1);
+      loopy.performSearch("d");
+      t.checkExpect(loopy.path.size() >= breadth.size(), true);
+      boolean connected = true;
+      for (int i = 1; i < loopy.path.size(); i++) {
+        Vertex from = loopy.path.get(i - 1);
+        Vertex to = loopy.path.get(i);
+        connected = connected && loopy.edgeBetween(to.x, to.y, from.x, from.y) != null;
+      }
+      t.checkExpect(connected, true);
+      t.checkExpect(loopy.path.get(loopy.path.size() - 1), loopy.arrOfVertices.get(0).get(0));
+    }
+  }
+
+  // tests that the score shown at the end is the same in the game and the replay, whichever
+  // search was shown
+  void testDisplayedScoreWithLoops(Tester t) {
+    Random r = new Random(3);
+    String[] keys = {"up", "down", "left", "right"};
+    // breadth first search can show a costlier path than the cheapest once there are loops
+    for (int seed = 0; seed < 50; seed++) {
+      MazeWorld loopy = new MazeWorld(15, 15, seed, true, 0.3);
+      for (int i = 0; i < 300; i++) {
+        loopy.onKeyEvent(keys[r.nextInt(4)]);
+      }
+      loopy.onKeyEvent("b");
+      Replayer replayer = new Replayer(loopy.log);
+      replayer.replay(loopy.log);
+      t.checkExpect(replayer.displayedScore(), loopy.displayedScore(), "seed " + seed);
+      t.checkExpect(loopy.displayedScore() >= loopy.score - loopy.pathCost(), true);
+    }
+  }
+
+  // tests fillDeadEnds and collapseCorridors on a perfect maze, which reduces to one
+  // corridor from the start to the end
+  void testJunctionGraphPerfect(Tester t) {
+    MazeWorld game = new MazeWorld(30, 20, 15, true);
+    JunctionGraph graph = new JunctionGraph(new FlatMaze(game));
+    t.checkExpect(graph.nodes, 2);
+    t.checkExpect(graph.edges, 1);
+    game.performSearch("b");
+    t.checkExpect(graph.filledCount, 600 - game.path.size());
+    t.checkExpect(graph.solve() + 1, game.pathCost());
+    int[] cells = graph.cellPath();
+    t.checkExpect(cells.length, game.path.size());
+    boolean same = true;
+    for (int i = 0; i < cells.length; i++) {
+      Vertex v = game.path.get(cells.length - 1 - i);
+      same = same && cells[i] == v.x * 20 + v.y;
+    }
+    t.checkExpect(same, true);
+    // a 1x10 maze is a single corridor through every cell, longer than half the maze
+    MazeWorld line = new MazeWorld(1, 10, 1);
+    JunctionGraph lineGraph = new JunctionGraph(new FlatMaze(line));
+    t.checkExpect(lineGraph.edges, 1);
+    t.checkExpect(lineGraph.solve(), 9);
+    t.checkExpect(lineGraph.cellPath(), new int[] {0, 1, 2, 3, 4, 5, 6, 7, 8, 9});
+    line.onKeyEvent("f");
+    t.checkExpect(line.path.size(), 10);
+  }
+
+  // tests solve and cellPath on mazes with loops, against the solver on the whole maze
+  void testJunctionGraphLoops(Tester t) {
+    for (int seed = 0; seed < 20; seed++) {
+      MazeWorld game = new MazeWorld(25, 18, seed, true, 0.2);
+      FlatMaze maze = new FlatMaze(game);
+      JunctionGraph graph = new JunctionGraph(maze);
+      t.checkExpect(graph.nodes < maze.cells() / 2, true);
+      int cost = graph.solve();
+      t.checkExpect(cost, new TerrainSolver(maze).solve(false));
+      // solving again reuses the graph
+      t.checkExpect(graph.solve(), cost);
+      int[] cells = graph.cellPath();
+      t.checkExpect(cells[0], 0);
+      t.checkExpect(cells[cells.length - 1], maze.cells() - 1);
+      int walked = 0;
+      for (int i = 1; i < cells.length; i++) {
+        Vertex from = game.arrOfVertices.get(cells[i - 1] / 18).get(cells[i - 1] % 18);
+        Vertex to = game.arrOfVertices.get(cells[i] / 18).get(cells[i] % 18);
+        walked += game.edgeBetween(to.x, to.y, from.x, from.y).cost;
+      }
+      t.checkExpect(walked, cost);
+    }
+  }
+
+  // tests the dead ends of the branching 3x2 maze
+  void testFillDeadEnds(Tester t) {
+    this.initData();
+    JunctionGraph graph = new JunctionGraph(this.branchMaze);
+    t.checkExpect(graph.filled[1], true);
+    t.checkExpect(graph.filled[3], true);
+    t.checkExpect(graph.filledCount, 2);
+    t.checkExpect(graph.degree(0), 1);
+    t.checkExpect(graph.solve(), 3);
+    t.checkExpect(graph.cellPath(), new int[] {0, 2, 4, 5});
+  }
+
+  // tests performJunctionSearch
+  void testPerformJunctionSearch(Tester t) {
+    MazeWorld game = new MazeWorld(20, 20, 9, false, 0.1);
+    game.performSearch("b");
+    int shortest = game.path.size();
+    game.onKeyEvent("f");
+    t.checkExpect(game.path.size(), shortest);
+    t.checkExpect(game.path.get(0), game.arrOfVertices.get(19).get(19));
+    t.checkExpect(game.path.get(shortest - 1), game.arrOfVertices.get(0).get(0));
+    JunctionGraph built = game.junctions;
+    game.performJunctionSearch();
+    t.checkExpect(game.junctions == built, true);
+    t.checkExpect(game.explored.size(), built.settled);
+    game.onKeyEvent("r");
+    t.checkExpect(game.junctions, null);
+  }
+
+  // tests MazeStats on the branching 3x2 maze
+  void testMazeStats(Tester t) {
+    this.initData();
+    MazeStats stats = new MazeStats(8, this.branchMaze);
+    t.checkExpect(stats.passages, 5);
+    t.checkExpect(stats.degreeCounts, new int[] {0, 2, 4, 0, 0});
+    t.checkExpect(stats.deadEnds(), 2);
+    t.checkExpect(stats.junctions(), 0);
+    t.checkExpect(stats.solutionLength, 4);
+    t.checkExpect(stats.diameter, 6);
+    t.checkInexact(stats.riverFactor, 2.0, 0.001);
+    t.checkExpect(stats.toCsv(), "8,3,2,5,2,4,0,0,6,4,2.000");
+  }
+
+  // tests MazeStats on generated mazes
+  void testMazeStatsGenerated(Tester t) {
+    for (int seed = 0; seed < 10; seed++) {
+      MazeWorld game = new MazeWorld(30, 25, seed);
+      MazeStats stats = new MazeStats(seed, new FlatMaze(game));
+      t.checkExpect(stats.passages, 30 * 25 - 1);
+      int cells = 0;
+      int sides = 0;
+      for (int d = 0; d < 5; d++) {
+        cells += stats.degreeCounts[d];
+        sides += d * stats.degreeCounts[d];
+      }
+      t.checkExpect(cells, 30 * 25);
+      t.checkExpect(sides, 2 * stats.passages);
+      game.performSearch("b");
+      t.checkExpect(stats.solutionLength, game.path.size());
+      t.checkExpect(stats.diameter >= stats.solutionLength, true);
+      // a tree's dead ends and junctions balance out
+      t.checkExpect(stats.deadEnds(), 2 + stats.degreeCounts[3] + 2 * stats.degreeCounts[4]);
+    }
+  }
+
+  // tests analyzeBatch against analyzing one maze at a time
+  void testAnalyzeBatch(Tester t) {
+    MazeAnalyzer analyzer = new MazeAnalyzer(12, 9, false, 0.1, 3);
+    StringBuilder out = new StringBuilder();
+    try {
+      analyzer.analyzeBatch(100, 150, out);
+    }
+    catch (Exception e) {
+      t.checkExpect(e, null, "analyzeBatch threw");
+    }
+    String[] rows = out.toString().split("\n");
+    t.checkExpect(rows.length, 151);
+    t.checkExpect(rows[0], MazeStats.CSV_HEADER);
+    t.checkExpect(rows[1], analyzer.analyze(100).toCsv());
+    t.checkExpect(rows[150], analyzer.analyze(249).toCsv());
+    t.checkExpect(analyzer.analyzeRange(170, 3).get(2), rows[73]);
+  }
+
+  // tests drawMaze on a 2x2 maze with passages right from (0,0) and down from (1,0)
+  void testDrawMaze(Tester t) {
+    FlatMaze maze = new FlatMaze(2, 2);
+    maze.rightCost[0] = 1;
+    maze.downCost[2] = 1;
+    FrameExporter exporter = new FrameExporter(maze, 3);
+    exporter.drawMaze();
+    byte w = FrameExporter.WALL;
+    byte c = FrameExporter.CELL;
+    byte e = FrameExporter.END;
+    t.checkExpect(exporter.pixels, new byte[] {
+        c, c, c, c, c, w,
+        c, c, c, c, c, w,
+        w, w, w, c, c, w,
+        c, c, w, e, e, w,
+        c, c, w, e, e, w,
+        w, w, w, w, w, w});
+    t.checkConstructorException(
+        new IllegalArgumentException("Scale must be at least 2 pixels per cell"),
+        "FrameExporter", maze, 1);
+  }
+
+  // tests export's frames
+  void testExportFrames(Tester t) {
+    FlatMaze maze = new FlatMaze(4, 3);
+    FrameExporter exporter = new FrameExporter(maze, 4);
+    FrameRecorder recorder = new FrameRecorder();
+    try {
+      // cells are numbered x * 3 + y
+      exporter.export(new int[] {0, 3, 4, 7, 10}, 5, new int[] {11, 8, 5}, 3, 2, recorder);
+    }
+    catch (Exception ex) {
+      t.checkExpect(ex, null, "export threw");
+    }
+    t.checkExpect(recorder.first.length, 16 * 12);
+    t.checkExpect(recorder.rects.size(), 5);
+    t.checkExpect(recorder.ended, true);
+    // the first frame colors (0,0) and (1,0), the third colors only (3,1)
+    t.checkExpect(recorder.rects.get(0), new int[] {0, 0, 7, 3});
+    t.checkExpect(recorder.rects.get(2), new int[] {12, 4, 3, 3});
+    t.checkExpect(recorder.patches.get(2)[0], FrameExporter.EXPLORED);
+    t.checkExpect(recorder.rects.get(4), new int[] {4, 8, 3, 3});
+    t.checkExpect(recorder.patches.get(4)[8], FrameExporter.PATH);
+    t.checkExpect(exporter.pixels[9 * 16 + 13], FrameExporter.PATH);
+  }
+
+  // tests that a failing sink stops the export with its own error, and is still closed
+  void testExportFailure(Tester t) {
+    FrameRecorder recorder = new FrameRecorder();
+    recorder.failAfter = 2;
+    Exception error = null;
+    try {
+      new FrameExporter(new FlatMaze(4, 3), 4)
+          .export(new int[] {0, 3, 4, 7, 10}, 5, new int[] {11, 8, 5}, 3, 2, recorder);
+    }
+    catch (Exception ex) {
+      error = ex;
+    }
+    t.checkExpect(error instanceof IOException, true);
+    t.checkExpect(error.getMessage(), "Disk full");
+    t.checkExpect(recorder.rects.size(), 2);
+    t.checkExpect(recorder.ended, true);
+  }
+
+  // tests isSearchKey
+  void testIsSearchKey(Tester t) {
+    t.checkExpect(FrameExporter.isSearchKey("b"), true);
+    t.checkExpect(FrameExporter.isSearchKey("f"), true);
+    t.checkExpect(FrameExporter.isSearchKey("x"), false);
+    t.checkExpect(FrameExporter.isSearchKey("r"), false);
+    t.checkExpect(FrameExporter.isSearchKey("up"), false);
+  }
+
+  // tests GifSink and PngSequenceSink by exporting a game's search
+  void testExportFiles(Tester t) {
+    MazeWorld game = new MazeWorld(8, 6, 21);
+    game.performSearch("b");
+    int frames = 1 + (game.explored.size() + 3) / 4 + (game.path.size() + 3) / 4;
+    try {
+      File gif = File.createTempFile("maze", ".gif");
+      new FrameExporter(new FlatMaze(game), 5).export(game, 4, new GifSink(gif, 2));
+      ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+      ImageInputStream in = ImageIO.createImageInputStream(gif);
+      reader.setInput(in);
+      t.checkExpect(reader.getNumImages(true), frames);
+      t.checkExpect(reader.getWidth(0), 40);
+      in.close();
+      gif.delete();
+
+      File dir = File.createTempFile("maze", "");
+      dir.delete();
+      new FrameExporter(new FlatMaze(game), 5).export(game, 4, new PngSequenceSink(dir));
+      File[] files = dir.listFiles();
+      t.checkExpect(files.length, frames);
+      t.checkExpect(ImageIO.read(new File(dir, "frame_000000.png")).getHeight(), 30);
+      for (File f : files) {
+        f.delete();
+      }
+      dir.delete();
+    }
+    catch (Exception ex) {
+      t.checkExpect(ex, null, "export threw");
+    }
+  }
+
+  // tests the spanning tree, solver and movement properties of many small seeded mazes
+  void testPropertiesManySeeds(Tester t) {
+    MazeProperties props = new MazeProperties();
+    Random sizes = new Random(34);
+    for (int seed = 0; seed < 1000; seed++) {
+      MazeWorld world = new MazeWorld(sizes.nextInt(20) + 1, sizes.nextInt(20) + 1, seed);
+      t.checkExpect(props.checkPassages(world), "", "seed " + seed);
+      t.checkExpect(props.checkSolvers(world), "", "seed " + seed);
+      t.checkExpect(props.checkMovement(world, seed, 100), "", "seed " + seed);
+    }
+  }
+
+  // tests the properties of seeded mazes with terrain costs and loops
+  void testPropertiesTerrainAndBraid(Tester t) {
+    MazeProperties props = new MazeProperties();
+    Random sizes = new Random(35);
+    for (int seed = 0; seed < 500; seed++) {
+      double braid = sizes.nextInt(5) * 0.25;
+      MazeWorld world = new MazeWorld(sizes.nextInt(20) + 2, sizes.nextInt(20) + 2, seed,
+          seed % 2 == 0, braid);
+      String where = "seed " + seed + ", braid " + braid;
+      t.checkExpect(props.checkPassages(world), "", where);
+      t.checkExpect(props.checkSolvers(world), "", where);
+      t.checkExpect(props.checkMovement(world, seed, 100), "", where);
+    }
+  }
+
+  // tests the properties at every size in MazeProperties.SCALES, within each time budget
+  void testPropertiesAtScale(Tester t) {
+    MazeProperties props = new MazeProperties();
+    for (int[] scale : MazeProperties.SCALES) {
+      String size = scale[0] + "x" + scale[1];
+      long start = System.nanoTime();
+      for (int seed = 0; seed < scale[2]; seed++) {
+        MazeWorld world = new MazeWorld(scale[0], scale[1], seed, seed % 3 == 1,
+            seed % 3 == 2 ? 0.1 : 0);
+        t.checkExpect(props.checkPassages(world), "", size + " seed " + seed);
+        t.checkExpect(props.checkSolvers(world), "", size + " seed " + seed);
+        t.checkExpect(props.checkMovement(world, seed, 200), "", size + " seed " + seed);
+      }
+      long millis = (System.nanoTime() - start) / 1000000;
+      t.checkExpect(millis <= scale[3], true,
+          size + " took " + millis + "ms, over its budget of " + scale[3] + "ms");
+    }
+  }
+
+  // tests the off-heap maze at every size in MazeProperties.OFF_HEAP_SCALES, within each
+  // time budget
+  void testOffHeapPropertiesAtScale(Tester t) {
+    MazeProperties props = new MazeProperties();
+    for (int[] scale : MazeProperties.OFF_HEAP_SCALES) {
+      String size = scale[0] + "x" + scale[1];
+      long start = System.nanoTime();
+      OffHeapMaze maze = new OffHeapMaze(scale[0], scale[1]);
+      for (int seed = 0; seed < scale[2]; seed++) {
+        maze.generate(seed);
+        t.checkExpect(props.checkOffHeap(maze), "", size + " seed " + seed);
+      }
+      maze.free();
+      long millis = (System.nanoTime() - start) / 1000000;
+      t.checkExpect(millis <= scale[3], true,
+          size + " took " + millis + "ms, over its budget of " + scale[3] + "ms");
+    }
+  }
+
+  // tests that the property checks catch broken mazes
+  void testPropertiesCatchProblems(Tester t) {
+    MazeProperties props = new MazeProperties();
+    // swaps a passage for a wall, closing a loop and cutting a cell off somewhere else
+    MazeWorld loop = new MazeWorld(6, 5, 1);
+    Edge wall = loop.worklist.remove(0);
+    loop.worklist.add(loop.edgesInTree.remove(0));
+    loop.edgesInTree.add(wall);
+    t.checkExpect(props.checkPassages(loop), "expected 0 passages closing loops, found 1");
+
+    // swaps a passage for a copy of another one
+    MazeWorld repeated = new MazeWorld(6, 5, 1);
+    Edge copied = repeated.edgesInTree.get(1);
+    repeated.edgesInTree.remove(0);
+    repeated.edgesInTree.add(new Edge(copied.to, copied.from, 0));
+    t.checkExpect(props.checkPassages(repeated), "passage from " + props.show(copied.to)
+        + " to " + props.show(copied.from) + " is repeated");
+
+    // swaps a passage for a diagonal one
+    MazeWorld diagonal = new MazeWorld(6, 5, 1);
+    diagonal.edgesInTree.remove(0);
+    diagonal.edgesInTree.add(new Edge(new Vertex(0, 0, new ArrayList<Edge>()),
+        new Vertex(1, 1, new ArrayList<Edge>()), 0));
+    t.checkExpect(props.checkPassages(diagonal),
+        "passage from (0, 0) to (1, 1) is not between neighbors in the grid");
+
+    // puts a passage back up as a wall
+    MazeWorld missing = new MazeWorld(6, 5, 2);
+    missing.worklist.add(missing.edgesInTree.remove(missing.edgesInTree.size() - 1));
+    t.checkExpect(props.checkPassages(missing), "expected 29 passages, found 28");
+    missing.edgesInTree.add(missing.worklist.remove(missing.worklist.size() - 1));
+    missing.worklist.remove(0);
+    t.checkExpect(props.checkPassages(missing),
+        "passages and walls left add up to 48, not 49");
+
+    FlatMaze maze = new FlatMaze(2, 2);
+    maze.rightCost[0] = 4;
+    t.checkExpect(props.passageCost(maze, 2, 0), 4);
+    t.checkExpect(props.passageCost(maze, 1, 2), 0);
+    t.checkExpect(props.countReachable(maze), 2);
+    t.checkExpect(props.root(new int[] {1, 2, 2}, 0), 2);
+    t.checkExpect(props.show(new Vertex(3, 4, new ArrayList<Edge>())), "(3, 4)");
+  }
+
+  // tests cheapestCost
+  void testCheapestCost(Tester t) {
+    MazeProperties props = new MazeProperties();
+    t.checkExpect(props.cheapestCost(this.branchMaze), 3);
+    // the direct passage costs 9, so the cheapest path goes round the other side for 3
+    FlatMaze loop = new FlatMaze(2, 2);
+    loop.rightCost[0] = 9;
+    loop.downCost[2] = 1;
+    loop.downCost[0] = 1;
+    loop.rightCost[1] = 2;
+    t.checkExpect(props.cheapestCost(loop), 3);
+    loop.rightCost[1] = 0;
+    t.checkExpect(props.cheapestCost(loop), 10);
+    loop.downCost[2] = 0;
+    t.checkExpect(props.cheapestCost(loop), -1);
+    t.checkExpect(props.cheapestCost(new FlatMaze(1, 1)), 0);
+    MazeWorld game = new MazeWorld(12, 9, 4, true, 0.3);
+    t.checkExpect(props.cheapestCost(new FlatMaze(game)),
+        new TerrainSolver(new FlatMaze(game)).solve(false));
+  }
+
+  // tests the IndexedMinHeap operations
+  void testIndexedMinHeap(Tester t) {
+    IndexedMinHeap heap = new IndexedMinHeap(6);
+    heap.insert(0, 50);
+    heap.insert(1, 20);
+    heap.insert(2, 40);
+    heap.insert(3, 30);
+    t.checkExpect(heap.contains(2), true);
+    t.checkExpect(heap.contains(4), false);
+    heap.decreaseKey(2, 10);
+    t.checkExpect(heap.pollMin(), 2);
+    t.checkExpect(heap.contains(2), false);
+    t.checkExpect(heap.pollMin(), 1);
+    t.checkExpect(heap.pollMin(), 3);
+    heap.insert(5, 1);
+    t.checkExpect(heap.pollMin(), 5);
+    t.checkExpect(heap.pollMin(), 0);
+    t.checkExpect(heap.isEmpty(), true);
+    heap.insert(4, 3);
+    heap.clear();
+    t.checkExpect(heap.isEmpty(), true);
+    t.checkExpect(heap.contains(4), false);
+  }
+
+  // tests FlatMaze's neighbor and cost against the passages of the maze it flattens
+  void testFlatMazeNeighbor(Tester t) {
+    MazeWorld game = new MazeWorld(9, 7, 21, true, 0.3);
+    FlatMaze maze = new FlatMaze(game);
+    // the steps up, down, left and right take
+    int[] dx = {0, 0, -1, 1};
+    int[] dy = {-1, 1, 0, 0};
+    boolean same = true;
+    for (int c = 0; c < maze.cells(); c++) {
+      int x = c / 7;
+      int y = c % 7;
+      for (int dir = 0; dir < 4; dir++) {
+        Edge e = game.edgeBetween(x + dx[dir], y + dy[dir], x, y);
+        int n = maze.neighbor(c, dir);
+        if (e == null) {
+          same = same && n == -1;
+        }
+        else {
+          same = same && n == (x + dx[dir]) * 7 + y + dy[dir] && maze.cost(c, dir) == e.cost;
+        }
+      }
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(maze.neighbor(0, MoveLog.UP), -1);
+    t.checkExpect(maze.neighbor(0, MoveLog.LEFT), -1);
+    t.checkExpect(maze.neighbor(62, MoveLog.RIGHT), -1);
+    t.checkExpect(maze.neighbor(62, MoveLog.DOWN), -1);
+  }
+
+  // tests TerrainSolver on the branching 3x2 maze, with its branch made expensive and
+  // joined to the end as a shortcut
+  void testTerrainSolver(Tester t) {
+    this.initData();
+    FlatMaze maze = this.branchMaze;
+    maze.downCost[0] = 9;
+    maze.rightCost[1] = 9;
+    maze.rightCost[3] = 1;
+    TerrainSolver solver = new TerrainSolver(maze);
+    t.checkExpect(solver.solve(false), 3);
+    t.checkExpect(solver.cameFrom[5], 4);
+    t.checkExpect(solver.cameFrom[4], 2);
+    t.checkExpect(solver.solve(true), 3);
+    t.checkExpect(solver.settled <= 6, true);
+    maze.downCost[4] = 0;
+    t.checkExpect(solver.solve(true), 19);
+    maze.downCost[2] = 5;
+    t.checkExpect(solver.solve(false), 7);
+    FlatMaze walled = new FlatMaze(2, 2);
+    t.checkExpect(new TerrainSolver(walled).solve(false), -1);
+  }
+
+  // tests the OffHeapBuffer accessors across chunk boundaries
+  void testOffHeapBuffer(Tester t) {
+    OffHeapBuffer buf = new OffHeapBuffer(40, 16);
+    t.checkExpect(buf.chunks.length, 3);
+    t.checkExpect(buf.chunks[2].capacity(), 8);
+    buf.putInt(3, 7);
+    buf.putInt(4, -9);
+    buf.putInt(8, 123456);
+    buf.putByte(39, (byte) 5);
+    t.checkExpect(buf.getInt(3), 7);
+    t.checkExpect(buf.getInt(4), -9);
+    t.checkExpect(buf.getInt(8), 123456);
+    t.checkExpect(buf.getByte(39), (byte) 5);
+    buf.clear();
+    t.checkExpect(buf.getInt(4), 0);
+    t.checkExpect(buf.getByte(39), (byte) 0);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Chunk size must be a power of two of at least 8"), "OffHeapBuffer", 40L, 12);
+  }
+
+  // tests permute
+  void testPermute(Tester t) {
+    OffHeapMaze maze = new OffHeapMaze(7, 5);
+    maze.generate(42);
+    boolean[] seen = new boolean[70];
+    for (long i = 0; i < 70; i++) {
+      long p = maze.permute(i);
+      t.checkExpect(p >= 0 && p < 70, true);
+      t.checkExpect(seen[(int) p], false);
+      seen[(int) p] = true;
+    }
+  }
+
+  // tests generate
+  void testOffHeapGenerate(Tester t) {
+    OffHeapMaze maze = new OffHeapMaze(50, 40);
+    maze.generate(7);
+    // a spanning tree built by union-find has exactly one passage fewer than cells
+    t.checkExpect(maze.countPassages(), 50L * 40 - 1);
+    // cells are numbered x * 40 + y, so the right column starts at 49 * 40
+    for (int y = 0; y < 40; y++) {
+      t.checkExpect(maze.canGoRight(49 * 40 + y), false);
+    }
+    for (int x = 0; x < 50; x++) {
+      t.checkExpect(maze.canGoDown(x * 40 + 39), false);
+    }
+    OffHeapMaze same = new OffHeapMaze(50, 40);
+    same.generate(7);
+    boolean identical = true;
+    for (long e = 0; e < maze.cells() * 2; e++) {
+      identical = identical && maze.isOpen(e) == same.isOpen(e);
+    }
+    t.checkExpect(identical, true);
+  }
+
+  // tests solve
+  void testOffHeapSolve(Tester t) {
+    OffHeapMaze maze = new OffHeapMaze(50, 40);
+    maze.generate(3);
+    long length = maze.solve();
+    t.checkExpect(length >= 89, true);
+    t.checkExpect(length <= 2000, true);
+    t.checkExpect(maze.explored <= 2000, true);
+    OffHeapMaze line = new OffHeapMaze(10, 1);
+    line.generate(1);
+    t.checkExpect(line.solve(), 10L);
+    t.checkExpect(line.explored, 10L);
+    // counting the reachable cells searches the whole maze
+    t.checkExpect(maze.countReachable(), 2000L);
+    t.checkExpect(maze.explored, 2000L);
+    // with every wall up, only the start is reached and there is no solution
+    OffHeapMaze walled = new OffHeapMaze(4, 3);
+    t.checkExpect(walled.countReachable(), 1L);
+    t.checkExpect(walled.solve(), 0L);
+    t.checkExpect(new OffHeapMaze(1, 1).solve(), 1L);
+  }
+
+  // tests that the heap solvers and analysis run on an off-heap maze through neighbor and
+  // cost
+  void testOffHeapAsGridMaze(Tester t) {
+    OffHeapMaze maze = new OffHeapMaze(30, 20);
+    maze.generate(11);
+    long length = maze.solve();
+    t.checkExpect(new TerrainSolver(maze).solve(true) + 1L, length);
+    t.checkExpect(new JunctionGraph(maze).solve() + 1L, length);
+    MazeStats stats = new MazeStats(11, maze);
+    t.checkExpect(stats.passages, 599);
+    t.checkExpect((long) stats.solutionLength, length);
+    // the passages seen through neighbor and cost are the ones in the wall bitmap
+    boolean same = true;
+    for (int c = 0; c < 600; c++) {
+      same = same && (maze.neighbor(c, MoveLog.RIGHT) != -1) == maze.canGoRight(c)
+          && (maze.neighbor(c, MoveLog.DOWN) != -1) == maze.canGoDown(c)
+          && maze.cost(c, MoveLog.RIGHT) == (maze.canGoRight(c) ? 1 : 0);
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(maze.neighbor(0, MoveLog.UP), -1);
+    t.checkExpect(maze.neighbor(0, MoveLog.LEFT), -1);
+    t.checkExpect(maze.neighbor(599, MoveLog.RIGHT), -1);
+    t.checkExpect(maze.neighbor(599, MoveLog.DOWN), -1);
+  }
+
+  // tests free
+  void testOffHeapFree(Tester t) {
+    OffHeapBuffer buffer = new OffHeapBuffer(100, 64);
+    buffer.putInt(20, 7);
+    buffer.free();
+    t.checkExpect(buffer.size, 0L);
+    t.checkExpect(buffer.chunks.length, 0);
+    // freeing or clearing again does nothing
+    buffer.free();
+    buffer.clear();
+    t.checkExpect(buffer.size, 0L);
+    t.checkExpect(buffer.chunks.length, 0);
+    // mazes freed as they go use no more direct memory than the largest one
+    for (int i = 0; i < 20; i++) {
+      OffHeapMaze maze = new OffHeapMaze(1000, 1000);
+      maze.generate(i);
+      t.checkExpect(maze.countPassages(), 1000L * 1000 - 1);
+      maze.free();
+      t.checkExpect(maze.ints.size, 0L);
+    }
+  }
+
   // tests compareTo
   void testCompareTo(Tester t) {
+    this.initData();
     t.checkExpect(this.eToC.compareTo(cToD), -1);
     t.checkExpect(this.aToB.compareTo(cToD), 1);
     t.checkExpect(this.aToE.compareTo(bToF), 0);